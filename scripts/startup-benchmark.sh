@@ -0,0 +1,60 @@
+#!/usr/bin/env bash
+# Startup benchmark: time from JVM launch to the first successful request, over several runs.
+#
+# Usage: scripts/startup-benchmark.sh [runs] [extra JVM options...]
+#   scripts/startup-benchmark.sh 10
+#   scripts/startup-benchmark.sh 10 -Dspring.profiles.active=prod
+#   scripts/startup-benchmark.sh 10 -Dspring.profiles.active=prod -XX:SharedArchiveFile=target/app.jsa
+#
+# JAR (default target/store-0.0.1-SNAPSHOT.jar), PORT (default 18080) and URL_PATH (default /api/v1/products/1)
+# can be set in the environment. Prints every run and the min, median and max in milliseconds.
+set -euo pipefail
+
+RUNS=${1:-5}
+shift || true
+JAR=${JAR:-target/store-0.0.1-SNAPSHOT.jar}
+PORT=${PORT:-18080}
+URL="http://localhost:${PORT}${URL_PATH:-/api/v1/products/1}"
+TIMEOUT_MS=${TIMEOUT_MS:-120000}
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+
+if [[ ! -f "$JAR" ]]; then
+  echo "Jar $JAR not found, build it with ./mvnw package first" >&2
+  exit 1
+fi
+
+now_ms() {
+  echo $(( $(date +%s%N) / 1000000 ))
+}
+
+results=()
+for run in $(seq 1 "$RUNS"); do
+  log=$(mktemp)
+  start=$(now_ms)
+  "$JAVA" "$@" -Dserver.port="$PORT" -Dorder.events.log-dir="$(mktemp -d)" -jar "$JAR" > "$log" 2>&1 &
+  pid=$!
+  elapsed=
+  while kill -0 "$pid" 2> /dev/null; do
+    if [[ "$(curl -s -o /dev/null -w '%{http_code}' "$URL")" == 200 ]]; then
+      elapsed=$(( $(now_ms) - start ))
+      break
+    fi
+    if (( $(now_ms) - start > TIMEOUT_MS )); then
+      break
+    fi
+    sleep 0.02
+  done
+  kill "$pid" 2> /dev/null || true
+  wait "$pid" 2> /dev/null || true
+  if [[ -z "$elapsed" ]]; then
+    echo "Run $run: no successful request, see $log" >&2
+    exit 1
+  fi
+  rm -f "$log"
+  echo "Run $run: ${elapsed} ms"
+  results+=("$elapsed")
+done
+
+sorted=($(printf '%s\n' "${results[@]}" | sort -n))
+echo "Time to first successful request over $RUNS runs: min ${sorted[0]} ms," \
+     "median ${sorted[$(( RUNS / 2 ))]} ms, max ${sorted[$(( RUNS - 1 ))]} ms"
@@ -0,0 +1,89 @@
+package com.demo.store.benchmark;
+
+import com.demo.store.StoreApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Starts the application against its own embedded H2 database
+ */
+final class BenchmarkContext {
+
+    private static final String INSERT_PRODUCT =
+            "INSERT INTO products (name, price, stock, version) VALUES (?, ?, ?, 0)";
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * Start an application context without the web layer and with an empty database
+     * @param properties Extra application properties, overriding the benchmark defaults
+     * @return Running application context
+     */
+    static ConfigurableApplicationContext start(Map<String, Object> properties) {
+        return start(WebApplicationType.NONE, properties);
+    }
+
+    /**
+     * Start an application context with an embedded web server on a random port and an empty database
+     * @param properties Extra application properties, overriding the benchmark defaults
+     * @return Running application context, the port is in the local.server.port property
+     */
+    static ConfigurableApplicationContext startWeb(Map<String, Object> properties) {
+        Map<String, Object> webProperties = new HashMap<>(properties);
+        webProperties.putIfAbsent("server.port", "0");
+        return start(WebApplicationType.SERVLET, webProperties);
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType webApplicationType, Map<String, Object> properties) {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        Map<String, Object> defaults = new HashMap<>();
+        defaults.put("spring.datasource.url", "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+        defaults.put("spring.sql.init.mode", "never");
+        defaults.put("spring.jpa.show-sql", "false");
+        defaults.put("logging.level.root", "WARN");
+        defaults.put("logging.level.com.demo.store", "WARN");
+        defaults.put("order.expiration-time-minutes", "1440");
+        defaults.put("order.events.log-dir", Path.of(System.getProperty("java.io.tmpdir"), "demo-store-bench", UUID.randomUUID().toString()));
+        defaults.putAll(properties);
+        // Passed as command line arguments, so they take precedence over application.yml
+        String[] args = defaults.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(StoreApplication.class)
+                .web(webApplicationType)
+                .run(args);
+    }
+
+    /**
+     * Insert products with JDBC batches
+     * @param context Application context
+     * @param count Number of products
+     * @param stockQuantity Stock of each product
+     * @return IDs of the inserted products
+     */
+    static List<Long> insertProducts(ConfigurableApplicationContext context, int count, int stockQuantity) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            batch.add(new Object[]{"Benchmark product " + i, 10 + i % 90, stockQuantity});
+            if (batch.size() == 10_000) {
+                jdbcTemplate.batchUpdate(INSERT_PRODUCT, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_PRODUCT, batch);
+        }
+        return jdbcTemplate.queryForList("SELECT id FROM products ORDER BY id", Long.class);
+    }
+}
@@ -0,0 +1,116 @@
+package com.demo.store.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Goodput of order creation past saturation, with and without the adaptive concurrency limiter.
+ * Clients create orders on a few hot products in optimistic mode, so conflicts and retries grow with concurrency.
+ * The created, rejected and failed counters are reported per second; goodput is the created rate. Vary the number
+ * of clients with -t, e.g. -Djmh.args="OrderLimiterBenchmark -t 500", and compare the created rate across runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+@Threads(200)
+public class OrderLimiterBenchmark {
+
+    @Param({"false", "true"})
+    private String limiterEnabled;
+
+    @Param({"8"})
+    private int hotProducts;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private String ordersUrl;
+    private List<Long> productIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.startWeb(Map.of(
+                "order.limiter.enabled", limiterEnabled,
+                "order.stock-reservation-mode", "optimistic",
+                "server.tomcat.threads.max", "400"));
+        productIds = BenchmarkContext.insertProducts(context, hotProducts, Integer.MAX_VALUE / 2);
+        ordersUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/v1/orders";
+        httpClient = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        httpClient.close();
+        context.close();
+    }
+
+    @Benchmark
+    public void createOrder(Outcomes outcomes) throws Exception {
+        Long productId = productIds.get(ThreadLocalRandom.current().nextInt(productIds.size()));
+        String body = "{\"items\":[{\"productId\":" + productId + ",\"quantity\":1}]}";
+        HttpRequest request = HttpRequest.newBuilder(URI.create(ordersUrl))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 201) {
+            outcomes.created++;
+        } else if (response.statusCode() == 429) {
+            outcomes.rejected++;
+            // Clients honour Retry-After with jitter, so rejected clients do not come back in lockstep
+            long retryAfterMs = 1000 * response.headers().firstValueAsLong("Retry-After").orElse(1);
+            Thread.sleep(ThreadLocalRandom.current().nextLong(retryAfterMs / 2, retryAfterMs * 3 / 2));
+        } else {
+            outcomes.failed++;
+        }
+    }
+
+    /**
+     * Outcomes per client thread, summed and reported as rates per second by JMH
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Outcomes {
+        public long created;
+        public long rejected;
+        public long failed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            created = 0;
+            rejected = 0;
+            failed = 0;
+        }
+    }
+}
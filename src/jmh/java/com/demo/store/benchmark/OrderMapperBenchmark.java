@@ -0,0 +1,80 @@
+package com.demo.store.benchmark;
+
+import com.demo.store.dto.OrderDTO;
+import com.demo.store.dto.OrderLineDTO;
+import com.demo.store.mapper.OrderMapper;
+import com.demo.store.mapper.OrderProductMapper;
+import com.demo.store.mapper.ProductMapper;
+import com.demo.store.model.OrderExtra;
+import com.demo.store.model.OrderProduct;
+import com.demo.store.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of OrderMapper by number of order items, from entities and from projection lines, without Spring or a database
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderMapperBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int itemCount;
+
+    private OrderMapper orderMapper;
+    private OrderExtra order;
+    private List<OrderLineDTO> lines;
+
+    @Setup
+    public void setUp() {
+        orderMapper = new OrderMapper(new OrderProductMapper(new ProductMapper()));
+
+        List<OrderProduct> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            Product product = new Product();
+            product.setId((long) i + 1);
+            product.setName("Benchmark product " + i);
+            product.setPrice(BigDecimal.valueOf(1999 + i, 2));
+            product.setStockQuantity(100);
+            OrderProduct item = new OrderProduct();
+            item.setProduct(product);
+            item.setQuantity(1 + i % 5);
+            items.add(item);
+        }
+        order = new OrderExtra(1L, LocalDateTime.now(), false, items);
+        lines = items.stream()
+                .map(item -> new OrderLineDTO(order.getId(), order.getCreatedAt(), order.isPaid(),
+                        item.getProduct().getId(), item.getProduct().getName(), item.getProduct().getPrice(),
+                        item.getProduct().getStockQuantity(), item.getQuantity()))
+                .toList();
+    }
+
+    @Benchmark
+    public OrderDTO toOrderDTO() {
+        return orderMapper.toOrderDTO(order);
+    }
+
+    @Benchmark
+    public List<OrderDTO> toOrderDTOs() {
+        return orderMapper.toOrderDTOs(lines);
+    }
+}
@@ -0,0 +1,90 @@
+package com.demo.store.benchmark;
+
+import com.demo.store.model.Order;
+import com.demo.store.model.OrderExtra;
+import com.demo.store.model.OrderProduct;
+import com.demo.store.model.Product;
+import com.demo.store.service.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of OrderService.createOrder by basket size, contention and stock reservation mode.
+ * Contention is set by the number of products the baskets are drawn from: with a single hot product
+ * every concurrent order competes for the same row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+@Threads(8)
+public class OrderServiceBenchmark {
+
+    @Param({"1", "10", "50"})
+    private int basketSize;
+
+    @Param({"1", "16", "1024"})
+    private int hotProducts;
+
+    @Param({"optimistic", "atomic", "in-memory"})
+    private String stockReservationMode;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private List<Long> productIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(Map.of("order.stock-reservation-mode", stockReservationMode));
+        productIds = BenchmarkContext.insertProducts(context, hotProducts, Integer.MAX_VALUE / 2);
+        orderService = context.getBean(OrderService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void createOrder(Blackhole blackhole) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<OrderProduct> items = new ArrayList<>(basketSize);
+        for (int i = 0; i < basketSize; i++) {
+            Product product = new Product();
+            product.setId(productIds.get(random.nextInt(productIds.size())));
+            OrderProduct item = new OrderProduct();
+            item.setProduct(product);
+            item.setQuantity(1);
+            items.add(item);
+        }
+        try {
+            OrderExtra order = orderService.createOrder(new Order(), items);
+            blackhole.consume(order);
+        } catch (RuntimeException e) {
+            // Conflicts that outlast the retries are part of the measured behaviour under contention
+            blackhole.consume(e);
+        }
+    }
+}
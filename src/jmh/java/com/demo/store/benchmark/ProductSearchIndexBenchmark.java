@@ -0,0 +1,61 @@
+package com.demo.store.benchmark;
+
+import com.demo.store.dto.ProductNameDTO;
+import com.demo.store.search.ProductSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of typeahead queries against ProductSearchIndex by catalog size, without Spring or a database
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class ProductSearchIndexBenchmark {
+
+    private static final String[] WORDS = {
+            "Pilsner", "Urquell", "světlý", "ležák", "Velkopopovický", "Kozel", "Radegast", "Ryze", "hořká",
+            "Svijanský", "Máz", "Krušovice", "Bohém", "Černý", "Žatecký", "Řezaný", "Plzeňský", "tmavý",
+            "výčepní", "speciál", "Budějovický", "Budvar", "Gambrinus", "Bernard", "kvasnicový", "nefiltrovaný"
+    };
+
+    @Param({"1000", "1000000"})
+    private int catalogSize;
+
+    @Param({"k", "koz", "velkopopovicky kozel", "zatecky rezany"})
+    private String query;
+
+    private ProductSearchIndex productSearchIndex;
+
+    @Setup
+    public void setUp() {
+        productSearchIndex = new ProductSearchIndex(null, 1000);
+        Random random = new Random(42);
+        for (int i = 0; i < catalogSize; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                    + " " + WORDS[random.nextInt(WORDS.length)] + " " + (i % 20);
+            productSearchIndex.put((long) i + 1, name);
+        }
+    }
+
+    @Benchmark
+    public List<ProductNameDTO> search() {
+        return productSearchIndex.search(query, 10);
+    }
+}
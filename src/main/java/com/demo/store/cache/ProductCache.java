@@ -0,0 +1,342 @@
+package com.demo.store.cache;
+
+import com.demo.store.dto.ProductStockDTO;
+import com.demo.store.exception.ServiceUnavailableException;
+import com.demo.store.model.Product;
+import com.demo.store.repository.ProductRepository;
+import com.demo.store.util.ETagUtils;
+import com.demo.store.util.TransactionUtils;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded read cache in front of ProductRepository.
+ * <p>
+ * Entries are evicted by size and TTL, and invalidated after commit by every write that changes a product.
+ * A miss installs a pending future and loads on the calling thread outside of any map lock, so a load waiting
+ * for the database never pins a virtual thread to its carrier. Concurrent readers of the same key wait for
+ * that one load, and an invalidation that races with a load always wins.
+ * Stock is the only field also changed outside of ProductService, so it is re-read with a light projection
+ * once an entry is older than the configured stock staleness bound; that re-read is shared the same way,
+ * for single products and for the catalog.
+ * A reader waits for another reader's load at most load-wait-ms. It then gets the entry it already had if the
+ * load was a stock re-read, and a ServiceUnavailableException otherwise; it never loads on its own, so a slow
+ * database does not get one query per waiting request. Executed and shared loads are counted as store.products.loads.
+ * The catalog ETag is computed once per catalog load, so a conditional request does not walk the product list.
+ * Cached products are shared snapshots and must not be modified by callers.
+ */
+@Slf4j
+@Component
+public class ProductCache {
+
+    private static final String CATALOG_KEY = "all";
+
+    private final ProductRepository productRepository;
+    private final AsyncCache<Long, CachedProduct> products;
+    private final AsyncCache<String, CachedCatalog> catalog;
+    private final long stockStalenessNanos;
+    private final long loadWaitMs;
+    private final Counter loadsExecuted;
+    private final Counter loadsCoalesced;
+    private final Counter loadWaitsTimedOut;
+
+    public ProductCache(ProductRepository productRepository,
+                        MeterRegistry meterRegistry,
+                        @Value("${product.cache.maximum-size:10000}") long maximumSize,
+                        @Value("${product.cache.ttl-seconds:600}") long ttlSeconds,
+                        @Value("${product.cache.stock-staleness-ms:1000}") long stockStalenessMs,
+                        @Value("${product.cache.load-wait-ms:1000}") long loadWaitMs) {
+        this.productRepository = productRepository;
+        this.stockStalenessNanos = Duration.ofMillis(stockStalenessMs).toNanos();
+        this.loadWaitMs = loadWaitMs;
+        this.loadsExecuted = loads(meterRegistry, "executed");
+        this.loadsCoalesced = loads(meterRegistry, "coalesced");
+        this.loadWaitsTimedOut = loads(meterRegistry, "wait_timeout");
+        this.products = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .buildAsync();
+        this.catalog = Caffeine.newBuilder()
+                .maximumSize(1)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, products.synchronous(), "products");
+        CaffeineCacheMetrics.monitor(meterRegistry, catalog.synchronous(), "productCatalog");
+    }
+
+    /**
+     * Get a product from the cache, loading it on a miss
+     * @param id Product ID
+     * @param loader Loader called on a miss, returns empty if the product does not exist
+     * @return Product snapshot, empty if the product does not exist
+     */
+    public Optional<Product> getProduct(Long id, Function<Long, Optional<Product>> loader) {
+        Supplier<CachedProduct> load = () -> loader.apply(id)
+                .map(product -> new CachedProduct(copyOf(product), System.nanoTime()))
+                .orElse(null);
+        while (true) {
+            CompletableFuture<CachedProduct> future = getOrLoad(products, id, load);
+            CachedProduct entry = await(future);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            if (System.nanoTime() - entry.stockCheckedAt() <= stockStalenessNanos || isStaleAfterWait(future, entry)) {
+                return Optional.of(entry.product());
+            }
+
+            // Only replace the entry we have read; a concurrent invalidation must not be undone.
+            // The reader that wins re-reads the stock, the others find its pending future on the next pass.
+            Refresh<CachedProduct> refreshing = new Refresh<>(entry);
+            if (products.asMap().replace(id, future, refreshing)) {
+                CachedProduct refreshed = null;
+                try {
+                    refreshed = lead(refreshing, () -> refreshStock(entry));
+                } finally {
+                    if (refreshed == null) {
+                        // A deleted product or a failed re-read is not cached
+                        products.asMap().remove(id, refreshing);
+                    }
+                }
+                return Optional.ofNullable(refreshed).map(CachedProduct::product);
+            }
+        }
+    }
+
+    /**
+     * Get all products from the cache, loading them on a miss
+     * @param loader Loader called on a miss
+     * @return Product snapshots with the ETag of the catalog
+     */
+    public ProductCatalog getCatalog(Supplier<List<Product>> loader) {
+        Supplier<CachedCatalog> load = () -> cachedCatalog(loader.get().stream().map(ProductCache::copyOf).toList());
+        while (true) {
+            CompletableFuture<CachedCatalog> future = getOrLoad(catalog, CATALOG_KEY, load);
+            CachedCatalog entry = await(future);
+            if (System.nanoTime() - entry.stockCheckedAt() <= stockStalenessNanos || isStaleAfterWait(future, entry)) {
+                return entry.catalog();
+            }
+
+            // Re-read by one reader at a time, like the stock of a single product
+            Refresh<CachedCatalog> refreshing = new Refresh<>(entry);
+            if (catalog.asMap().replace(CATALOG_KEY, future, refreshing)) {
+                CachedCatalog refreshed = null;
+                try {
+                    refreshed = lead(refreshing, () -> refreshStock(entry, load));
+                } finally {
+                    if (refreshed == null) {
+                        catalog.asMap().remove(CATALOG_KEY, refreshing);
+                    }
+                }
+                return refreshed.catalog();
+            }
+        }
+    }
+
+    /**
+     * Get the ETag of the catalog without loading product rows: from the cached catalog while its stock
+     * is within the staleness bound, otherwise from the loader
+     * @param loader Loader of the current ETag, e.g. from aggregates of the products table
+     * @return Quoted ETag of the catalog
+     */
+    public String getCatalogETag(Supplier<String> loader) {
+        CompletableFuture<CachedCatalog> future = catalog.getIfPresent(CATALOG_KEY);
+        if (future != null && future.isDone() && !future.isCompletedExceptionally()) {
+            CachedCatalog entry = future.join();
+            if (System.nanoTime() - entry.stockCheckedAt() <= stockStalenessNanos) {
+                return entry.catalog().eTag();
+            }
+        }
+        return loader.get();
+    }
+
+    /**
+     * Invalidate products and the catalog once the current transaction commits
+     * @param ids Product IDs
+     */
+    public void evictAfterCommit(Collection<Long> ids) {
+        List<Long> evicted = List.copyOf(ids);
+        TransactionUtils.afterCommit(() -> {
+            products.synchronous().invalidateAll(evicted);
+            catalog.synchronous().invalidateAll();
+            log.debug("Product cache invalidated for product IDs {}", evicted);
+        });
+    }
+
+    /**
+     * Invalidate the catalog once the current transaction commits, e.g. after a product was created
+     */
+    public void evictCatalogAfterCommit() {
+        TransactionUtils.afterCommit(() -> catalog.synchronous().invalidateAll());
+    }
+
+    /**
+     * Get the future of an entry, loading it on the calling thread on a miss.
+     * The map lock is only held to install the future, never during the load.
+     * A load that fails or returns null is not cached.
+     * @param cache Cache
+     * @param key Key
+     * @param loader Loader called on a miss
+     * @return Future of the entry, pending if another reader is loading it
+     */
+    private <K, V> CompletableFuture<V> getOrLoad(AsyncCache<K, V> cache, K key, Supplier<V> loader) {
+        CompletableFuture<V> existing = cache.getIfPresent(key);
+        if (existing != null) {
+            return existing;
+        }
+        CompletableFuture<V> created = new CompletableFuture<>();
+        existing = cache.asMap().putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        lead(created, loader);
+        return created;
+    }
+
+    /**
+     * Run a load for every reader waiting on its future
+     * @param future Future installed in the cache by the calling thread
+     * @param loader Loader
+     * @return Loaded value
+     */
+    private <V> V lead(CompletableFuture<V> future, Supplier<V> loader) {
+        loadsExecuted.increment();
+        try {
+            V value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Get the value of a future, waiting at most load-wait-ms for a load of another reader
+     * @param future Future of the entry
+     * @return Value of the entry, or the entry read before if the wait for a stock re-read times out
+     * @throws ServiceUnavailableException If the wait for any other load times out
+     */
+    private <V> V await(CompletableFuture<V> future) {
+        try {
+            if (future.isDone()) {
+                return future.join();
+            }
+            loadsCoalesced.increment();
+            return future.get(loadWaitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            loadWaitsTimedOut.increment();
+            if (future instanceof Refresh<V> refresh) {
+                log.debug("Shared stock re-read still running after {} ms, serving the entry read before", loadWaitMs);
+                return refresh.stale;
+            }
+            log.warn("Shared product load still running after {} ms, request rejected", loadWaitMs);
+            throw new ServiceUnavailableException("Product data is loading slowly, try again later");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a product load", e);
+        } catch (CompletionException | ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Check if an entry is the one a stock re-read started from, returned because the wait for it timed out
+     */
+    private static <V> boolean isStaleAfterWait(CompletableFuture<V> future, V entry) {
+        return future instanceof Refresh<V> refresh && refresh.stale == entry;
+    }
+
+    private CachedProduct refreshStock(CachedProduct entry) {
+        return productRepository.findStockById(entry.product().getId())
+                .map(stock -> new CachedProduct(withStock(entry.product(), stock), System.nanoTime()))
+                .orElse(null);
+    }
+
+    private CachedCatalog refreshStock(CachedCatalog entry, Supplier<CachedCatalog> load) {
+        Map<Long, ProductStockDTO> stocks = productRepository.findAllStock().stream()
+                .collect(Collectors.toMap(ProductStockDTO::id, Function.identity()));
+        List<Product> products = entry.catalog().products();
+        if (stocks.size() != products.size()) {
+            // Products were added or removed by someone else: reload the whole catalog
+            return load.get();
+        }
+        List<Product> refreshedProducts = products.stream()
+                .map(product -> {
+                    ProductStockDTO stock = stocks.get(product.getId());
+                    return stock == null ? product : withStock(product, stock);
+                })
+                .toList();
+        return cachedCatalog(refreshedProducts);
+    }
+
+    private static CachedCatalog cachedCatalog(List<Product> products) {
+        return new CachedCatalog(new ProductCatalog(products, ETagUtils.catalogETag(products)), System.nanoTime());
+    }
+
+    private static Counter loads(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("store.products.loads")
+                .description("Product and catalog loads: executed against the database, coalesced into a load in flight, " +
+                        "or given up after waiting load-wait-ms")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static Product withStock(Product product, ProductStockDTO stock) {
+        Product copy = copyOf(product);
+        copy.setStockQuantity(stock.stockQuantity());
+        copy.setVersion(stock.version());
+        return copy;
+    }
+
+    private static Product copyOf(Product product) {
+        Product copy = new Product();
+        copy.setId(product.getId());
+        copy.setName(product.getName());
+        copy.setPrice(product.getPrice());
+        copy.setStockQuantity(product.getStockQuantity());
+        copy.setVersion(product.getVersion());
+        return copy;
+    }
+
+    private record CachedProduct(Product product, long stockCheckedAt) {
+    }
+
+    private record CachedCatalog(ProductCatalog catalog, long stockCheckedAt) {
+    }
+
+    /**
+     * Pending stock re-read, holding the entry it started from for readers that cannot wait for it
+     */
+    private static class Refresh<V> extends CompletableFuture<V> {
+        private final V stale;
+
+        private Refresh(V stale) {
+            this.stale = stale;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.demo.store.cache;
+
+import com.demo.store.model.Product;
+
+import java.util.List;
+
+/**
+ * Cached product catalog with its ETag, computed once when the catalog is loaded
+ * @param products Unmodifiable list of product snapshots
+ * @param eTag Quoted ETag of the catalog
+ */
+public record ProductCatalog(List<Product> products, String eTag) {
+}
@@ -0,0 +1,23 @@
+package com.demo.store.config;
+
+import com.demo.store.StoreApplication;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class StartupConfig {
+
+    /**
+     * Keep the application's own beans eager when spring.main.lazy-initialization is on (prod profile).
+     * They serve the hot request paths or run scheduled work that nothing else would trigger,
+     * so only framework beans that are rarely used are created on first use.
+     * @return Filter excluding beans of the application packages from lazy initialization
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter eagerApplicationBeans() {
+        String applicationPackage = StoreApplication.class.getPackageName();
+        return (beanName, beanDefinition, beanType) ->
+                beanType != null && beanType.getPackageName().startsWith(applicationPackage);
+    }
+}
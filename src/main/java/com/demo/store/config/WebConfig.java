@@ -0,0 +1,23 @@
+package com.demo.store.config;
+
+import com.demo.store.limiter.OrderWriteLimitInterceptor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    private final OrderWriteLimitInterceptor orderWriteLimitInterceptor;
+
+    /**
+     * Limit concurrent order writes
+     * @param registry Interceptor registry
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(orderWriteLimitInterceptor).addPathPatterns("/api/v1/orders/**");
+    }
+}
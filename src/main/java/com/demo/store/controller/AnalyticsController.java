@@ -0,0 +1,58 @@
+package com.demo.store.controller;
+
+import com.demo.store.dto.SalesBucketDTO;
+import com.demo.store.mapper.SalesMapper;
+import com.demo.store.model.RollupBucket;
+import com.demo.store.service.SalesRollupService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/v1/analytics")
+@RequiredArgsConstructor
+@Tag(name = "Analytics", description = "Sales rollups per product and time bucket")
+public class AnalyticsController {
+
+    private final SalesRollupService salesRollupService;
+    private final SalesMapper salesMapper;
+
+    @Operation(summary = "Get sales", description = "Returns units and revenue per product and time bucket (MINUTE, HOUR or DAY) of the order creation time; " +
+            "changes of the last flush interval may not be included yet")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Sales found"),
+            @ApiResponse(responseCode = "400", description = "Invalid bucket or range")
+    })
+    @GetMapping("/sales")
+    public ResponseEntity<List<SalesBucketDTO>> getSales(
+            @RequestParam RollupBucket bucket,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long productId) {
+        List<SalesBucketDTO> sales = salesRollupService.getSales(bucket, from, to, productId)
+                .stream()
+                .map(salesMapper::toSalesBucketDTO)
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(sales);
+    }
+
+    @Operation(summary = "Rebuild sales rollups", description = "Recomputes all rollups from the orders; run it while order traffic is quiet")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Rollups rebuilt")
+    })
+    @PostMapping("/rebuild")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void rebuild() {
+        salesRollupService.rebuild();
+    }
+}
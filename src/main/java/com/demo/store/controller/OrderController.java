@@ -1,10 +1,22 @@
 package com.demo.store.controller;
 
+import com.demo.store.dto.BatchOrderResultDTO;
+import com.demo.store.dto.CreateOrderBatchDTO;
 import com.demo.store.dto.CreateOrderDTO;
 import com.demo.store.dto.OrderDTO;
+import com.demo.store.dto.OrderEventDTO;
 import com.demo.store.mapper.OrderMapper;
 import com.demo.store.mapper.OrderProductMapper;
+import com.demo.store.service.BatchOrderResult;
+import com.demo.store.service.IdempotencyService;
+import com.demo.store.service.IdempotentResult;
+import com.demo.store.service.LoggedOrderEvent;
+import com.demo.store.service.NewOrder;
+import com.demo.store.service.OrderEventService;
+import com.demo.store.service.OrderPage;
 import com.demo.store.service.OrderService;
+import com.demo.store.util.CursorUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -12,11 +24,16 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/v1/orders")
@@ -24,21 +41,56 @@ import java.util.stream.Collectors;
 @Tag(name = "Orders", description = "Operations with orders")
 public class OrderController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    public static final String NEXT_OFFSET_HEADER = "X-Next-Offset";
+
     private final OrderService orderService;
+    private final IdempotencyService idempotencyService;
+    private final OrderEventService orderEventService;
     private final OrderMapper orderMapper;
     private final OrderProductMapper orderProductMapper;
+    private final ObjectMapper objectMapper;
 
-    @Operation(summary = "Get all orders", description = "Returns a list of all orders")
+    @Operation(summary = "Get all orders", description = "Returns a page of orders; the cursor of the next page is sent in the " + NEXT_CURSOR_HEADER + " header")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "List of orders found")
+            @ApiResponse(responseCode = "200", description = "Page of orders found"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or page size")
     })
     @GetMapping
-    public ResponseEntity<List<OrderDTO>> getAllOrders() {
-        List<OrderDTO> orders = orderService.getAllOrders()
-                .stream()
-                .map(orderMapper::toOrderDTO)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(orders);
+    public ResponseEntity<List<OrderDTO>> getAllOrders(@RequestParam(required = false) String cursor,
+                                                       @RequestParam(required = false) Integer size) {
+        return toPageResponse(orderService.getAllOrders(CursorUtils.decode(cursor), size));
+    }
+
+    @Operation(summary = "Export all orders", description = "Streams all orders as newline-delimited JSON, one order per line")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Orders streamed")
+    })
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportOrders() {
+        StreamingResponseBody body = outputStream -> {
+            orderService.exportOrders(order -> writeLine(outputStream, orderMapper.toOrderDTO(order)));
+            outputStream.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @Operation(summary = "Read order events", description = "Returns order lifecycle events (CREATED, PAID, CANCELLED, EXPIRED) " +
+            "from the event log, starting at an offset; the offset to continue from is sent in the " + NEXT_OFFSET_HEADER + " header")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Events at and after the offset, empty if there are none yet"),
+            @ApiResponse(responseCode = "400", description = "Negative offset or invalid limit")
+    })
+    @GetMapping("/events")
+    public ResponseEntity<List<OrderEventDTO>> getOrderEvents(@RequestParam(defaultValue = "0") long from,
+                                                              @RequestParam(defaultValue = "100") int limit) {
+        List<LoggedOrderEvent> events = orderEventService.readEvents(from, limit);
+        long nextOffset = events.isEmpty() ? from : events.get(events.size() - 1).offset() + 1;
+        return ResponseEntity.ok()
+                .header(NEXT_OFFSET_HEADER, String.valueOf(nextOffset))
+                .body(events.stream().map(orderMapper::toOrderEventDTO).toList());
     }
 
     @Operation(summary = "Get order by ID", description = "Returns the order by its ID")
@@ -48,19 +100,57 @@ public class OrderController {
     })
     @GetMapping("/{id}")
     public ResponseEntity<OrderDTO> getOrderById(@PathVariable Long id) {
-        OrderDTO order = orderMapper.toOrderDTO(orderService.getOrderById(id));
+        OrderDTO order = orderMapper.toOrderDTOs(orderService.getOrderById(id)).get(0);
         return ResponseEntity.ok(order);
     }
 
-    @Operation(summary = "Create order", description = "Creates a new order")
+    @Operation(summary = "Create order", description = "Creates a new order; with an " + IDEMPOTENCY_KEY_HEADER + " header, " +
+            "repeated requests with the same key get the first response instead of creating another order")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "201", description = "Order created")
+            @ApiResponse(responseCode = "201", description = "Order created, or the stored response of the first request with the same key"),
+            @ApiResponse(responseCode = "409", description = "Idempotency key used for a different request or its request still in progress")
     })
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public ResponseEntity<OrderDTO> createOrder(@Valid @RequestBody CreateOrderDTO dto) {
-        OrderDTO createdOrder = orderMapper.toOrderDTO(orderService.createOrder(orderMapper.toOrder(dto), orderProductMapper.toOrderProducts(dto)));
-        return ResponseEntity.status(HttpStatus.CREATED).body(createdOrder);
+    public ResponseEntity<OrderDTO> createOrder(@Valid @RequestBody CreateOrderDTO dto,
+                                                @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return ResponseEntity.status(HttpStatus.CREATED).body(createOrder(dto));
+        }
+        // The response is stored with the key in the transaction that creates the order
+        IdempotentResult<OrderDTO> result = idempotencyService.execute(idempotencyKey, dto, OrderDTO.class,
+                storeResponse -> orderMapper.toOrderDTO(orderService.createOrder(orderMapper.toOrder(dto),
+                        orderProductMapper.toOrderProducts(dto), created -> storeResponse.accept(orderMapper.toOrderDTO(created)))));
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(result.replayed()))
+                .body(result.value());
+    }
+
+    @Operation(summary = "Create orders in a batch", description = "Creates many orders at once; each order is created or rejected on its own")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Result of every order, in request order"),
+            @ApiResponse(responseCode = "400", description = "Invalid request or too many orders")
+    })
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchOrderResultDTO>> createOrders(@Valid @RequestBody CreateOrderBatchDTO dto) {
+        List<NewOrder> newOrders = dto.getOrders().stream()
+                .map(order -> new NewOrder(orderMapper.toOrder(order), orderProductMapper.toOrderProducts(order)))
+                .toList();
+        List<BatchOrderResult> results = orderService.createOrders(newOrders);
+
+        List<BatchOrderResultDTO> response = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            BatchOrderResultDTO result = new BatchOrderResultDTO();
+            result.setIndex(i);
+            result.setCreated(results.get(i).isCreated());
+            if (results.get(i).isCreated()) {
+                result.setOrder(orderMapper.toOrderDTO(results.get(i).order()));
+            } else {
+                result.setError(results.get(i).error());
+            }
+            response.add(result);
+        }
+        return ResponseEntity.ok(response);
     }
 
     @Operation(summary = "Update status of order", description = "Updates status of an existing order to paid")
@@ -85,16 +175,52 @@ public class OrderController {
         orderService.cancelOrder(id);
     }
 
-    @Operation(summary = "Get orders by paid status", description = "Returns a list of orders by paid status")
+    @Operation(summary = "Get orders by paid status", description = "Returns a page of orders by paid status; the cursor of the next page is sent in the " + NEXT_CURSOR_HEADER + " header")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "List of orders found")
+            @ApiResponse(responseCode = "200", description = "Page of orders found"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or page size")
     })
     @GetMapping("/status")
-    public ResponseEntity<List<OrderDTO>> getOrdersByPaidStatus(@RequestParam boolean paid) {
-        List<OrderDTO> orders = orderService.getOrdersByPaidStatus(paid)
-                .stream()
-                .map(orderMapper::toOrderDTO)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(orders);
+    public ResponseEntity<List<OrderDTO>> getOrdersByPaidStatus(@RequestParam boolean paid,
+                                                                @RequestParam(required = false) String cursor,
+                                                                @RequestParam(required = false) Integer size) {
+        return toPageResponse(orderService.getOrdersByPaidStatus(paid, CursorUtils.decode(cursor), size));
+    }
+
+    /**
+     * Write one order as a single NDJSON line
+     * @param outputStream Response output stream
+     * @param order OrderDTO to write
+     */
+    private void writeLine(OutputStream outputStream, OrderDTO order) {
+        try {
+            outputStream.write(objectMapper.writeValueAsBytes(order));
+            outputStream.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Map a page of orders to the response, passing the next cursor in a header
+     * @param page Page of orders
+     * @return Response entity with the orders of the page
+     */
+    private ResponseEntity<List<OrderDTO>> toPageResponse(OrderPage page) {
+        List<OrderDTO> orders = orderMapper.toOrderDTOs(page.lines());
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextAfterId() != null) {
+            response.header(NEXT_CURSOR_HEADER, CursorUtils.encode(page.nextAfterId()));
+        }
+        return response.body(orders);
+    }
+
+    /**
+     * Create an order and map it to the response
+     * @param dto CreateOrderDTO
+     * @return Created order
+     */
+    private OrderDTO createOrder(CreateOrderDTO dto) {
+        return orderMapper.toOrderDTO(orderService.createOrder(orderMapper.toOrder(dto), orderProductMapper.toOrderProducts(dto)));
     }
 }
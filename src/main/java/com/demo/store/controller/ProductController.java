@@ -1,20 +1,39 @@
 package com.demo.store.controller;
 
+import com.demo.store.cache.ProductCatalog;
 import com.demo.store.dto.CreateProductDTO;
 import com.demo.store.dto.ProductDTO;
+import com.demo.store.dto.ProductImportResultDTO;
+import com.demo.store.dto.ProductSuggestionDTO;
+import com.demo.store.dto.StockAdjustmentBatchDTO;
+import com.demo.store.dto.StockAdjustmentResultDTO;
 import com.demo.store.dto.UpdateProductDTO;
 import com.demo.store.mapper.ProductMapper;
+import com.demo.store.model.Product;
+import com.demo.store.service.ProductImportFormat;
+import com.demo.store.service.ProductImportResult;
+import com.demo.store.service.ProductImportService;
 import com.demo.store.service.ProductService;
+import com.demo.store.service.StockAdjustment;
+import com.demo.store.service.StockAdjustmentService;
+import com.demo.store.util.ETagUtils;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -25,30 +44,65 @@ import java.util.stream.Collectors;
 public class ProductController {
 
     private final ProductService productService;
+    private final ProductImportService productImportService;
+    private final StockAdjustmentService stockAdjustmentService;
     private final ProductMapper productMapper;
 
-    @Operation(summary = "Get all products", description = "Returns a list of all products")
+    @Operation(summary = "Get all products", description = "Returns a list of all products; supports If-None-Match")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "List of products found")
+            @ApiResponse(responseCode = "200", description = "List of products found"),
+            @ApiResponse(responseCode = "304", description = "Catalog not modified")
     })
     @GetMapping
-    public ResponseEntity<List<ProductDTO>> getAllProducts() {
-        List<ProductDTO> products = productService.getAllProducts()
+    public ResponseEntity<List<ProductDTO>> getAllProducts(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            // Answered without loading product rows, even right after an order has invalidated the cached catalog
+            String currentETag = productService.getCatalogETag();
+            if (ETagUtils.matches(ifNoneMatch, currentETag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(currentETag).build();
+            }
+        }
+        ProductCatalog catalog = productService.getCatalog();
+        List<ProductDTO> products = catalog.products()
                 .stream()
                 .map(productMapper::toProductDTO)
                 .collect(Collectors.toList());
+        return ResponseEntity.ok().eTag(catalog.eTag()).body(products);
+    }
+
+    @Operation(summary = "Search products", description = "Returns products whose name matches the query, ignoring case and diacritics; " +
+            "queries shorter than three characters match word prefixes, longer ones match anywhere in the name")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Matching products, best matches first"),
+            @ApiResponse(responseCode = "400", description = "Invalid limit")
+    })
+    @GetMapping("/search")
+    public ResponseEntity<List<ProductSuggestionDTO>> searchProducts(@RequestParam String q,
+                                                                     @RequestParam(defaultValue = "10") int limit) {
+        List<ProductSuggestionDTO> products = productService.searchProducts(q, limit)
+                .stream()
+                .map(productMapper::toProductSuggestionDTO)
+                .collect(Collectors.toList());
         return ResponseEntity.ok(products);
     }
 
-    @Operation(summary = "Get product by ID", description = "Returns the product by its ID")
+    @Operation(summary = "Get product by ID", description = "Returns the product by its ID; supports If-None-Match")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Product found"),
+            @ApiResponse(responseCode = "304", description = "Product not modified"),
             @ApiResponse(responseCode = "404", description = "Product not found")
     })
     @GetMapping("/{id}")
-    public ResponseEntity<ProductDTO> getProductById(@PathVariable Long id) {
-        ProductDTO product = productMapper.toProductDTO(productService.getProductById(id));
-        return ResponseEntity.ok(product);
+    public ResponseEntity<ProductDTO> getProductById(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Product product = productService.getProductById(id);
+        String currentETag = ETagUtils.productETag(product);
+        if (ETagUtils.matches(ifNoneMatch, currentETag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(currentETag).build();
+        }
+        return ResponseEntity.ok().eTag(currentETag).body(productMapper.toProductDTO(product));
     }
 
     @Operation(summary = "Create product", description = "Creates a new product")
@@ -62,6 +116,37 @@ public class ProductController {
         return ResponseEntity.status(HttpStatus.CREATED).body(createdProduct);
     }
 
+    @Operation(summary = "Import products", description = "Streams a CSV body with the header name,price,stockQuantity or an NDJSON body " +
+            "of products and upserts them by name in batches; invalid rows and the rows of a batch that cannot be saved " +
+            "are rejected and reported without stopping the import")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import summary"),
+            @ApiResponse(responseCode = "400", description = "Malformed CSV header or quoting")
+    })
+    @PostMapping(value = "/import", consumes = {ProductImportFormat.CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ProductImportResultDTO> importProducts(HttpServletRequest request) throws IOException {
+        MediaType contentType = MediaType.parseMediaType(request.getContentType());
+        Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+        ProductImportResult result = productImportService.importProducts(
+                new InputStreamReader(request.getInputStream(), charset), ProductImportFormat.of(contentType));
+        return ResponseEntity.ok(productMapper.toProductImportResultDTO(result));
+    }
+
+    @Operation(summary = "Adjust stock in bulk", description = "Applies many stock corrections, each a delta or an absolute value, " +
+            "in request order; adjustments that cannot be applied are reported as conflicts without stopping the others, " +
+            "and a chunk that fails ends the request with the range that did not take effect")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Number of applied adjustments, the conflicts and the failed range"),
+            @ApiResponse(responseCode = "400", description = "Invalid request or too many adjustments")
+    })
+    @PatchMapping("/stock")
+    public ResponseEntity<StockAdjustmentResultDTO> adjustStock(@Valid @RequestBody StockAdjustmentBatchDTO dto) {
+        List<StockAdjustment> adjustments = dto.getAdjustments().stream()
+                .map(productMapper::toStockAdjustment)
+                .toList();
+        return ResponseEntity.ok(productMapper.toStockAdjustmentResultDTO(stockAdjustmentService.adjustStock(adjustments)));
+    }
+
     @Operation(summary = "Update product", description = "Updates an existing product")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Product updated"),
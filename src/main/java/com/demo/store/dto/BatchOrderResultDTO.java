@@ -0,0 +1,19 @@
+package com.demo.store.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+public class BatchOrderResultDTO {
+    @Schema(description = "Position of the order in the request", example = "0")
+    private int index;
+
+    @Schema(description = "Whether the order was created", example = "true")
+    private boolean created;
+
+    @Schema(description = "Created order, absent if the order was rejected")
+    private OrderDTO order;
+
+    @Schema(description = "Reason of the rejection, absent if the order was created", example = "Insufficient stock: Svijanský Máz")
+    private String error;
+}
@@ -0,0 +1,28 @@
+package com.demo.store.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class OrderEventDTO {
+    @Schema(description = "Offset of the event in the log; the next read starts after it", example = "1041")
+    private long offset;
+
+    @Schema(description = "ID of the event, the same if an event is delivered twice after a crash", example = "2087")
+    private Long eventId;
+
+    @Schema(description = "ID of the order", example = "1")
+    private Long orderId;
+
+    @Schema(description = "Type of the event: CREATED, PAID, CANCELLED or EXPIRED", example = "PAID")
+    private String type;
+
+    @Schema(description = "Time of the change", example = "2021-01-01T12:00:00")
+    private LocalDateTime occurredAt;
+
+    @Schema(description = "Ordered quantities, absent for expired orders")
+    private List<ProductIdQuantityDTO> items;
+}
@@ -0,0 +1,26 @@
+package com.demo.store.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One row of the order read projection: an order joined with one of its items and the ordered product.
+ * An order without items is returned as a single row with empty item and product fields.
+ * @param orderId Order ID
+ * @param createdAt Order creation time
+ * @param paid Order paid status
+ * @param productId Product ID, null for an order without items
+ * @param productName Product name
+ * @param price Product price
+ * @param stockQuantity Product stock quantity
+ * @param quantity Ordered quantity
+ */
+public record OrderLineDTO(Long orderId,
+                           LocalDateTime createdAt,
+                           boolean paid,
+                           Long productId,
+                           String productName,
+                           BigDecimal price,
+                           Integer stockQuantity,
+                           Integer quantity) {
+}
@@ -0,0 +1,10 @@
+package com.demo.store.dto;
+
+/**
+ * Aggregates of the products table that change with every product change, see ETagUtils.catalogETag
+ * @param count Number of products
+ * @param versionSum Sum of all product versions
+ * @param maxId Highest product ID
+ */
+public record ProductCatalogVersionDTO(Long count, Long versionSum, Long maxId) {
+}
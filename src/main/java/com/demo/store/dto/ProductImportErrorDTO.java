@@ -0,0 +1,13 @@
+package com.demo.store.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+public class ProductImportErrorDTO {
+    @Schema(description = "Line of the body the rejected row starts at", example = "17")
+    private long line;
+
+    @Schema(description = "Reason of the rejection", example = "Product price must be greater than or equal to 0")
+    private String message;
+}
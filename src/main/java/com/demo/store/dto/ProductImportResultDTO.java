@@ -0,0 +1,24 @@
+package com.demo.store.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ProductImportResultDTO {
+    @Schema(description = "Rows that created a product", example = "950")
+    private long inserted;
+
+    @Schema(description = "Rows that updated the price and stock of a product with the same name", example = "40")
+    private long updated;
+
+    @Schema(description = "Rows replaced by a later row with the same name in the same batch", example = "0")
+    private long duplicates;
+
+    @Schema(description = "Rows that could not be parsed, failed validation or belonged to a batch that could not be saved", example = "10")
+    private long rejected;
+
+    @Schema(description = "First rejected rows with their reasons")
+    private List<ProductImportErrorDTO> errors;
+}
@@ -0,0 +1,9 @@
+package com.demo.store.dto;
+
+/**
+ * Name of a product without loading the whole entity
+ * @param id Product ID
+ * @param name Product name
+ */
+public record ProductNameDTO(Long id, String name) {
+}
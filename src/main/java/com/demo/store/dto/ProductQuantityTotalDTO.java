@@ -0,0 +1,14 @@
+package com.demo.store.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Total quantity and revenue of a product across several orders created at the same time
+ * @param productId Product ID
+ * @param createdAt Creation time of the orders
+ * @param quantity Total quantity
+ * @param revenue Total revenue at the sale prices
+ */
+public record ProductQuantityTotalDTO(Long productId, LocalDateTime createdAt, Long quantity, BigDecimal revenue) {
+}
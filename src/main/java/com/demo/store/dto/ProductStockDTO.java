@@ -0,0 +1,10 @@
+package com.demo.store.dto;
+
+/**
+ * Stock level of a product without loading the whole entity
+ * @param id Product ID
+ * @param stockQuantity Stock quantity
+ * @param version Version of the product row
+ */
+public record ProductStockDTO(Long id, Integer stockQuantity, Long version) {
+}
@@ -0,0 +1,13 @@
+package com.demo.store.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+public class ProductSuggestionDTO {
+    @Schema(description = "ID of the product", example = "2")
+    private Long id;
+
+    @Schema(description = "Product name", example = "Velkopopovický Kozel 11")
+    private String name;
+}
@@ -0,0 +1,32 @@
+package com.demo.store.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+import java.time.LocalDateTime;
+
+@Data
+public class SalesBucketDTO {
+    @Schema(description = "Start of the time bucket", example = "2025-03-01T14:00:00")
+    private LocalDateTime bucketStart;
+
+    @Schema(description = "ID of the product", example = "1")
+    private Long productId;
+
+    @Schema(description = "Product name", example = "Big Thing")
+    private String productName;
+
+    @Schema(description = "Units ordered in the bucket, without cancelled and expired orders", example = "12")
+    private long units;
+
+    @Schema(description = "Units of paid orders", example = "9")
+    private long paidUnits;
+
+    @Schema(description = "Revenue of the ordered units at their sale price", example = "239.88")
+    private BigDecimal revenue;
+
+    @Schema(description = "Revenue of the paid units at their sale price", example = "179.91")
+    private BigDecimal paidRevenue;
+}
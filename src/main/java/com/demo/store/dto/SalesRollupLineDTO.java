@@ -0,0 +1,23 @@
+package com.demo.store.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One sales rollup joined with the current product name
+ * @param bucketStart Start of the time bucket
+ * @param productId Product ID
+ * @param productName Product name, null if the product was deleted
+ * @param units Units of non-cancelled orders created in the bucket
+ * @param paidUnits Units of paid orders created in the bucket
+ * @param revenue Revenue of the units at their sale price
+ * @param paidRevenue Revenue of the paid units at their sale price
+ */
+public record SalesRollupLineDTO(LocalDateTime bucketStart,
+                                 Long productId,
+                                 String productName,
+                                 long units,
+                                 long paidUnits,
+                                 BigDecimal revenue,
+                                 BigDecimal paidRevenue) {
+}
@@ -0,0 +1,16 @@
+package com.demo.store.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class StockAdjustmentBatchDTO {
+    @NotEmpty
+    @Valid
+    @Schema(description = "Stock adjustments, applied in request order")
+    private List<StockAdjustmentDTO> adjustments;
+}
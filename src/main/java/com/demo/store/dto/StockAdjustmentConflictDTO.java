@@ -0,0 +1,16 @@
+package com.demo.store.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+public class StockAdjustmentConflictDTO {
+    @Schema(description = "Position of the adjustment in the request", example = "3")
+    private int index;
+
+    @Schema(description = "ID of the product", example = "1")
+    private Long productId;
+
+    @Schema(description = "Reason why the adjustment was not applied", example = "Insufficient stock")
+    private String reason;
+}
@@ -0,0 +1,20 @@
+package com.demo.store.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class StockAdjustmentDTO {
+    @NotNull(message = "Product ID is mandatory")
+    @Schema(description = "ID of the product", example = "1")
+    private Long productId;
+
+    @Schema(description = "Change of the stock quantity, exclusive with absolute", example = "-3")
+    private Integer delta;
+
+    @Min(value = 0, message = "Stock quantity must be greater than or equal to 0")
+    @Schema(description = "New stock quantity, exclusive with delta", example = "120")
+    private Integer absolute;
+}
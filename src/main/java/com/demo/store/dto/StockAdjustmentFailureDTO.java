@@ -0,0 +1,17 @@
+package com.demo.store.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+public class StockAdjustmentFailureDTO {
+    @Schema(description = "Position of the first adjustment that did not take effect", example = "1000")
+    private int from;
+
+    @Schema(description = "Position after the last adjustment that did not take effect", example = "2500")
+    private int to;
+
+    @Schema(description = "Reason why the adjustments did not take effect",
+            example = "Chunk starting at 1000 failed and was rolled back, later adjustments were not attempted")
+    private String reason;
+}
@@ -0,0 +1,18 @@
+package com.demo.store.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class StockAdjustmentResultDTO {
+    @Schema(description = "Number of applied adjustments", example = "998")
+    private int applied;
+
+    @Schema(description = "Adjustments that were not applied, with their reasons")
+    private List<StockAdjustmentConflictDTO> conflicts;
+
+    @Schema(description = "Adjustments that did not take effect because a chunk failed; null if every chunk was applied")
+    private StockAdjustmentFailureDTO failed;
+}
@@ -0,0 +1,9 @@
+package com.demo.store.eventlog;
+
+/**
+ * Record read from the event log
+ * @param offset Offset of the record
+ * @param payload Payload of the record
+ */
+public record LogRecord(long offset, byte[] payload) {
+}
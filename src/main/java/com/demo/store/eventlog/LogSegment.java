@@ -0,0 +1,153 @@
+package com.demo.store.eventlog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * One segment of the event log: a data file with the record payloads back to back and an index file
+ * with the end position of every record, both memory-mapped at their full size.
+ * <p>
+ * Record n of the segment spans data[end(n - 1), end(n)), so any record is found with two reads.
+ * Index entries are written only after the data they point to has been forced to disk, so an entry of 0
+ * marks the end of the segment after a crash. One writer appends; readers only look at records below
+ * the published count.
+ */
+class LogSegment implements Closeable {
+
+    static final String DATA_SUFFIX = ".log";
+    static final String INDEX_SUFFIX = ".index";
+    private static final int INDEX_ENTRY_BYTES = Integer.BYTES;
+
+    private final long baseOffset;
+    private final int maxRecords;
+    private final FileChannel dataChannel;
+    private final FileChannel indexChannel;
+    private final MappedByteBuffer data;
+    private final MappedByteBuffer index;
+
+    private int size;
+    private volatile int count;
+
+    private LogSegment(Path dir, long baseOffset, int maxBytes, int maxRecords) throws IOException {
+        this.baseOffset = baseOffset;
+        this.maxRecords = maxRecords;
+        this.dataChannel = FileChannel.open(dir.resolve(fileName(baseOffset, DATA_SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.indexChannel = FileChannel.open(dir.resolve(fileName(baseOffset, INDEX_SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, maxBytes);
+        this.index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) maxRecords * INDEX_ENTRY_BYTES);
+        recover(maxBytes);
+    }
+
+    /**
+     * Open a segment, creating its files if they do not exist
+     * @param dir Directory of the log
+     * @param baseOffset Offset of the first record of the segment
+     * @param maxBytes Size of the data file
+     * @param maxRecords Max number of records
+     * @return Segment positioned after its last complete record
+     * @throws IOException If the files cannot be opened or mapped
+     */
+    static LogSegment open(Path dir, long baseOffset, int maxBytes, int maxRecords) throws IOException {
+        return new LogSegment(dir, baseOffset, maxBytes, maxRecords);
+    }
+
+    static String fileName(long baseOffset, String suffix) {
+        return String.format("%020d%s", baseOffset, suffix);
+    }
+
+    long baseOffset() {
+        return baseOffset;
+    }
+
+    /**
+     * Get the offset the next record of this segment would get
+     * @return Base offset plus the number of records
+     */
+    long endOffset() {
+        return baseOffset + count;
+    }
+
+    /**
+     * Append as many records as fit, starting at the given position of the list, and force them to disk
+     * @param records Record payloads
+     * @param from Position of the first record to append
+     * @return Number of appended records, 0 if the segment is full
+     * @throws IOException If forcing fails
+     */
+    int append(List<byte[]> records, int from) throws IOException {
+        int appended = 0;
+        int end = size;
+        while (from + appended < records.size() && count + appended < maxRecords) {
+            byte[] record = records.get(from + appended);
+            if (end + record.length > data.capacity()) {
+                break;
+            }
+            data.put(end, record);
+            end += record.length;
+            appended++;
+        }
+        if (appended == 0) {
+            return 0;
+        }
+        data.force(size, end - size);
+
+        int position = size;
+        for (int i = 0; i < appended; i++) {
+            position += records.get(from + i).length;
+            index.putInt((count + i) * INDEX_ENTRY_BYTES, position);
+        }
+        index.force(count * INDEX_ENTRY_BYTES, appended * INDEX_ENTRY_BYTES);
+        size = end;
+        count += appended;
+        return appended;
+    }
+
+    /**
+     * Read one record
+     * @param offset Offset of the record, below {@link #endOffset()}
+     * @return Payload of the record
+     */
+    byte[] read(long offset) {
+        int n = (int) (offset - baseOffset);
+        int start = n == 0 ? 0 : index.getInt((n - 1) * INDEX_ENTRY_BYTES);
+        int end = index.getInt(n * INDEX_ENTRY_BYTES);
+        byte[] record = new byte[end - start];
+        data.get(start, record);
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        dataChannel.close();
+        indexChannel.close();
+    }
+
+    /**
+     * Count the complete records: the index ends at the first entry that is not past the previous one
+     */
+    private void recover(int maxBytes) {
+        int end = 0;
+        int n = 0;
+        while (n < maxRecords) {
+            int entry = index.getInt(n * INDEX_ENTRY_BYTES);
+            if (entry <= end || entry > maxBytes) {
+                break;
+            }
+            end = entry;
+            n++;
+        }
+        size = end;
+        count = n;
+        // Entries left behind by a torn write must not be taken for records after the next append
+        for (int stale = n; stale < maxRecords && index.getInt(stale * INDEX_ENTRY_BYTES) != 0; stale++) {
+            index.putInt(stale * INDEX_ENTRY_BYTES, 0);
+        }
+    }
+}
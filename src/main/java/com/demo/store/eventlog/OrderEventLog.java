@@ -0,0 +1,181 @@
+package com.demo.store.eventlog;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of order events on disk, split into memory-mapped segments.
+ * <p>
+ * Every record gets the next sequential offset. Segments are named after the offset of their first record,
+ * so the segment of an offset is a floor lookup and the record itself is found through the segment index
+ * without scanning. Appends are forced to disk before they become visible to readers. The log is reopened
+ * after a restart at the last complete record. Only one log may use a directory at a time.
+ */
+@Slf4j
+@Component
+public class OrderEventLog {
+
+    private static final String LOCK_FILE = ".lock";
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final int segmentRecords;
+
+    private final ConcurrentNavigableMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+    private FileChannel lockChannel;
+    private LogSegment active;
+    private volatile long endOffset;
+
+    public OrderEventLog(@Value("${order.events.log-dir}") Path dir,
+                         @Value("${order.events.segment-bytes:16777216}") int segmentBytes,
+                         @Value("${order.events.segment-records:131072}") int segmentRecords) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.segmentRecords = segmentRecords;
+    }
+
+    /**
+     * Open the existing segments, or create the first one
+     * @throws IOException If the directory or a segment cannot be opened
+     */
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        Files.createDirectories(dir);
+        lock();
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Long> baseOffsets = files
+                    .map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(LogSegment.DATA_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - LogSegment.DATA_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+            for (Long baseOffset : baseOffsets) {
+                segments.put(baseOffset, LogSegment.open(dir, baseOffset, segmentBytes, segmentRecords));
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, LogSegment.open(dir, 0L, segmentBytes, segmentRecords));
+        }
+        active = segments.lastEntry().getValue();
+        endOffset = active.endOffset();
+        log.info("Order event log opened in {} with {} segments, next offset {}", dir, segments.size(), endOffset);
+    }
+
+    /**
+     * Append records and force them to disk
+     * @param records Record payloads, none of them empty
+     * @return Offset of the first appended record
+     * @throws IllegalArgumentException If a record is empty or larger than a segment
+     * @throws UncheckedIOException If writing fails
+     */
+    public synchronized long append(List<byte[]> records) {
+        for (byte[] record : records) {
+            if (record.length == 0 || record.length > segmentBytes) {
+                throw new IllegalArgumentException("Event log records must have 1 to " + segmentBytes + " bytes");
+            }
+        }
+        long firstOffset = endOffset;
+        int appended = 0;
+        try {
+            while (appended < records.size()) {
+                int written = active.append(records, appended);
+                if (written == 0) {
+                    roll();
+                    continue;
+                }
+                appended += written;
+                endOffset = active.endOffset();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return firstOffset;
+    }
+
+    /**
+     * Read consecutive records
+     * @param fromOffset Offset of the first record
+     * @param maxRecords Max number of records
+     * @return Records in offset order, empty if there is nothing at or after the offset
+     */
+    public List<LogRecord> read(long fromOffset, int maxRecords) {
+        long end = Math.min(endOffset, fromOffset + maxRecords);
+        List<LogRecord> records = new ArrayList<>((int) Math.max(0, end - fromOffset));
+        long offset = fromOffset;
+        while (offset < end) {
+            Map.Entry<Long, LogSegment> entry = segments.floorEntry(offset);
+            if (entry == null) {
+                break;
+            }
+            LogSegment segment = entry.getValue();
+            long segmentEnd = Math.min(end, segment.endOffset());
+            if (segmentEnd <= offset) {
+                break;
+            }
+            for (; offset < segmentEnd; offset++) {
+                records.add(new LogRecord(offset, segment.read(offset)));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Get the offset the next appended record will get
+     * @return Next offset
+     */
+    public long endOffset() {
+        return endOffset;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        for (LogSegment segment : segments.values()) {
+            segment.close();
+        }
+        if (lockChannel != null) {
+            lockChannel.close();
+        }
+    }
+
+    /**
+     * Make sure no other log writes to the same directory, in this process or another one
+     */
+    private void lock() throws IOException {
+        lockChannel = FileChannel.open(dir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("Order event log in " + dir + " is already in use");
+        }
+    }
+
+    private void roll() throws IOException {
+        LogSegment next = LogSegment.open(dir, active.endOffset(), segmentBytes, segmentRecords);
+        segments.put(next.baseOffset(), next);
+        active = next;
+        log.info("Order event log rolled to a new segment at offset {}", next.baseOffset());
+    }
+}
@@ -1,18 +1,26 @@
 package com.demo.store.exception;
 
+import com.demo.store.metrics.OrderMetrics;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import java.util.Objects;
 
 @RestControllerAdvice
 @Slf4j
+@RequiredArgsConstructor
 public class GlobalExceptionHandler {
+    private final OrderMetrics orderMetrics;
+
     /**
      * Handle NotFoundException
      * @param ex NotFoundException
@@ -35,8 +43,51 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
     }
 
+    /**
+     * Handle IdempotencyConflictException
+     * @param ex IdempotencyConflictException
+     * @return Response entity with error message
+     */
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<String> handleIdempotencyConflictException(IdempotencyConflictException ex) {
+        log.warn("Idempotency conflict: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+    }
+
+    /**
+     * Handle ServiceUnavailableException
+     * @param ex ServiceUnavailableException
+     * @return Response entity with error message
+     */
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<String> handleServiceUnavailableException(ServiceUnavailableException ex) {
+        log.warn("Service unavailable: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ex.getMessage());
+    }
+
+    /**
+     * Handle TooManyRequestsException
+     * @param ex TooManyRequestsException
+     * @return Response entity with error message and the Retry-After header
+     */
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<String> handleTooManyRequestsException(TooManyRequestsException ex) {
+        // Rejections come in bursts under overload, so they are counted by the limiter instead of logged one by one
+        log.debug("Request shed: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ex.getMessage());
+    }
+
+    /**
+     * Handle OptimisticLockingFailureException
+     * @param ex OptimisticLockingFailureException
+     * @return Response entity with error message
+     */
     @ExceptionHandler(OptimisticLockingFailureException.class)
     public ResponseEntity<String> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex) {
+        log.warn("Optimistic lock conflict: {}", ex.getMessage());
+        orderMetrics.conflictRejected();
         return ResponseEntity
                 .status(HttpStatus.CONFLICT)
                 .body("Data update conflict: the product was changed by another user. Try to repeat the operation.");
@@ -74,6 +125,17 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
     }
 
+    /**
+     * Handle a missing or malformed request parameter, e.g. an unknown enum value or an invalid timestamp
+     * @param ex MethodArgumentTypeMismatchException or MissingServletRequestParameterException
+     * @return Response entity with error message
+     */
+    @ExceptionHandler({MethodArgumentTypeMismatchException.class, MissingServletRequestParameterException.class})
+    public ResponseEntity<String> handleRequestParameterException(Exception ex) {
+        log.warn("Invalid request parameter: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
     /**
      * Handle general exception
      * @param ex Exception
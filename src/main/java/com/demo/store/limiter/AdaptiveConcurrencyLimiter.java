@@ -0,0 +1,187 @@
+package com.demo.store.limiter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Adaptive limit on concurrent order writes, adjusted by the gradient of observed latency.
+ * <p>
+ * A request gets a permit right away or is rejected, so excess load is shed instead of queued. Latencies are
+ * averaged over windows of window-size requests. After each window the limit moves towards
+ * limit * gradient + sqrt(limit), where the gradient is latency-tolerance times the long-term average latency
+ * divided by the latency of the window, capped to [0.5, 1]. While latency stays near its long-term average, the
+ * limit grows by about sqrt(limit) per window; when requests start to queue for the database, the window latency
+ * rises and the limit shrinks until it no longer does. Windows in which the limit was not in use leave it unchanged.
+ * <p>
+ * Releases record their latency into the current window without locking; only the release that completes
+ * a window switches to a new one and adjusts the limit.
+ */
+@Slf4j
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double MIN_GRADIENT = 0.5;
+    private static final int WARMUP_WINDOWS = 10;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejected;
+    private final LongSupplier nanoClock;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double smoothing;
+    private final int windowSize;
+    private final double longWindowWeight;
+
+    private final AtomicReference<Window> window = new AtomicReference<>(new Window());
+    private volatile double limit;
+    // Guarded by this
+    private double longLatencyNanos;
+    private int windows;
+
+    @Autowired
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${order.limiter.initial-limit:20}") int initialLimit,
+                                      @Value("${order.limiter.min-limit:2}") int minLimit,
+                                      @Value("${order.limiter.max-limit:200}") int maxLimit,
+                                      @Value("${order.limiter.latency-tolerance:1.5}") double latencyTolerance,
+                                      @Value("${order.limiter.smoothing:0.2}") double smoothing,
+                                      @Value("${order.limiter.window-size:20}") int windowSize,
+                                      @Value("${order.limiter.long-window:30}") int longWindow) {
+        this(meterRegistry, System::nanoTime, initialLimit, minLimit, maxLimit, latencyTolerance, smoothing,
+                windowSize, longWindow);
+    }
+
+    AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry, LongSupplier nanoClock, int initialLimit, int minLimit,
+                               int maxLimit, double latencyTolerance, double smoothing, int windowSize, int longWindow) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Concurrency limits must satisfy 1 <= min <= initial <= max");
+        }
+        this.nanoClock = nanoClock;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.smoothing = smoothing;
+        this.windowSize = windowSize;
+        this.longWindowWeight = 2.0 / (longWindow + 1);
+
+        this.rejected = Counter.builder("store.orders.limiter.rejected")
+                .description("Order writes rejected because the concurrency limit was reached")
+                .register(meterRegistry);
+        Gauge.builder("store.orders.limiter.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current limit of concurrent order writes")
+                .register(meterRegistry);
+        Gauge.builder("store.orders.limiter.in_flight", inFlight, AtomicInteger::get)
+                .description("Order writes in progress")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Take a permit if the limit allows another request
+     * @return Permit to release when the request is done, null if the limit is reached
+     */
+    public Permit tryAcquire() {
+        int currentLimit = (int) limit;
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= currentLimit) {
+                rejected.increment();
+                return null;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return new Permit(nanoClock.getAsLong(), current + 1);
+    }
+
+    /**
+     * Return a permit and record the latency of its request
+     * @param permit Permit taken by {@link #tryAcquire()}
+     */
+    public void release(Permit permit) {
+        inFlight.decrementAndGet();
+        adjust(permit, nanoClock.getAsLong() - permit.startNanos());
+    }
+
+    /**
+     * Get the current limit
+     * @return Max number of concurrent requests
+     */
+    public double getLimit() {
+        return limit;
+    }
+
+    /**
+     * Get the number of requests holding a permit
+     * @return Requests in progress
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void adjust(Permit permit, long latencyNanos) {
+        Window current = window.get();
+        current.latencyNanos.add(latencyNanos);
+        current.maxInFlight.accumulateAndGet(permit.inFlight(), Math::max);
+        if (current.samples.incrementAndGet() != windowSize) {
+            // A sample racing with the switch may still land in the closed window; it is dropped or skews its average slightly
+            return;
+        }
+        window.set(new Window());
+        closeWindow((double) current.latencyNanos.sum() / windowSize, current.maxInFlight.get());
+    }
+
+    private synchronized void closeWindow(double shortLatency, int windowMaxInFlight) {
+        boolean limitInUse = windowMaxInFlight * 2 >= limit;
+        if (windows < WARMUP_WINDOWS) {
+            // Plain average until there are enough windows for the exponential one to mean something
+            windows++;
+            longLatencyNanos += (shortLatency - longLatencyNanos) / windows;
+        } else {
+            longLatencyNanos += (shortLatency - longLatencyNanos) * longWindowWeight;
+        }
+        if (longLatencyNanos > shortLatency * 2) {
+            // Latency fell well below the long-term average, e.g. after a spike: let the average catch up faster
+            longLatencyNanos *= 0.95;
+        }
+        if (!limitInUse) {
+            return;
+        }
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, latencyTolerance * longLatencyNanos / shortLatency));
+        double target = limit * gradient + Math.sqrt(limit);
+        double previous = limit;
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - smoothing) + target * smoothing));
+        if ((int) limit != (int) previous) {
+            log.debug("Order write limit {} -> {}, window latency {} ms, long-term latency {} ms", (int) previous,
+                    (int) limit, String.format("%.1f", shortLatency / 1_000_000), String.format("%.1f", longLatencyNanos / 1_000_000));
+        }
+    }
+
+    /**
+     * Latency samples of one window
+     */
+    private static class Window {
+        private final LongAdder latencyNanos = new LongAdder();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final AtomicInteger samples = new AtomicInteger();
+    }
+
+    /**
+     * Permission to run one request
+     * @param startNanos Time the permit was taken
+     * @param inFlight Requests in progress including this one when it was taken
+     */
+    public record Permit(long startNanos, int inFlight) {
+    }
+}
@@ -2,12 +2,18 @@ package com.demo.store.mapper;
 
 import com.demo.store.dto.CreateOrderDTO;
 import com.demo.store.dto.OrderDTO;
+import com.demo.store.dto.OrderEventDTO;
+import com.demo.store.dto.OrderLineDTO;
+import com.demo.store.dto.ProductIdQuantityDTO;
 import com.demo.store.dto.ProductQuantityDTO;
 import com.demo.store.model.Order;
 import com.demo.store.model.OrderExtra;
+import com.demo.store.service.LoggedOrderEvent;
+import com.demo.store.service.OrderEvent;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -35,6 +41,31 @@ public class OrderMapper {
         return dto;
     }
 
+    /**
+     * Maps order lines to OrderDTO structures, one per order.
+     * Lines of the same order must be adjacent, as returned by the order read projection.
+     * @param lines Order lines
+     * @return List of OrderDTO in the order of the lines
+     */
+    public List<OrderDTO> toOrderDTOs(List<OrderLineDTO> lines) {
+        List<OrderDTO> orders = new ArrayList<>();
+        OrderDTO current = null;
+        for (OrderLineDTO line : lines) {
+            if (current == null || !current.getId().equals(line.orderId())) {
+                current = new OrderDTO();
+                current.setId(line.orderId());
+                current.setCreatedAt(line.createdAt());
+                current.setPaid(line.paid());
+                current.setItems(new ArrayList<>());
+                orders.add(current);
+            }
+            if (line.productId() != null) {
+                current.getItems().add(orderProductMapper.toOrderProductDTO(line));
+            }
+        }
+        return orders;
+    }
+
     /**
      * Maps CreateOrderDTO structure to Order entity
      * @param dto CreateOrderDTO
@@ -45,4 +76,30 @@ public class OrderMapper {
         order.setPaid(dto.getPaid() != null ? dto.getPaid() : false);
         return order;
     }
-}
\ No newline at end of file
+
+    /**
+     * Maps an order event read from the event log to OrderEventDTO
+     * @param loggedEvent Event with its offset
+     * @return OrderEventDTO
+     */
+    public OrderEventDTO toOrderEventDTO(LoggedOrderEvent loggedEvent) {
+        OrderEvent event = loggedEvent.event();
+        OrderEventDTO dto = new OrderEventDTO();
+        dto.setOffset(loggedEvent.offset());
+        dto.setEventId(event.eventId());
+        dto.setOrderId(event.orderId());
+        dto.setType(event.type().name());
+        dto.setOccurredAt(event.occurredAt());
+        if (event.items() != null) {
+            dto.setItems(event.items().entrySet().stream()
+                    .map(item -> {
+                        ProductIdQuantityDTO itemDTO = new ProductIdQuantityDTO();
+                        itemDTO.setProductId(item.getKey());
+                        itemDTO.setQuantity(item.getValue());
+                        return itemDTO;
+                    })
+                    .collect(Collectors.toList()));
+        }
+        return dto;
+    }
+}
@@ -1,6 +1,7 @@
 package com.demo.store.mapper;
 
 import com.demo.store.dto.CreateOrderDTO;
+import com.demo.store.dto.OrderLineDTO;
 import com.demo.store.dto.ProductIdQuantityDTO;
 import com.demo.store.dto.ProductQuantityDTO;
 import com.demo.store.model.OrderProduct;
@@ -28,6 +29,18 @@ public class OrderProductMapper {
         return dto;
     }
 
+    /**
+     * Maps an order line to ProductQuantityDTO structure
+     * @param line Order line with an item
+     * @return ProductQuantityDTO
+     */
+    public ProductQuantityDTO toOrderProductDTO(OrderLineDTO line) {
+        ProductQuantityDTO dto = new ProductQuantityDTO();
+        dto.setQuantity(line.quantity());
+        dto.setProduct(productMapper.toProductDTO(line));
+        return dto;
+    }
+
     /**
      * Maps ProductIdQuantityDTO structure to OrderProduct entity
      * @param dto ProductIdQuantityDTO
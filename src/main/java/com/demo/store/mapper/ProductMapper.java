@@ -1,9 +1,21 @@
 package com.demo.store.mapper;
 
 import com.demo.store.dto.CreateProductDTO;
+import com.demo.store.dto.OrderLineDTO;
 import com.demo.store.dto.ProductDTO;
+import com.demo.store.dto.ProductImportErrorDTO;
+import com.demo.store.dto.ProductImportResultDTO;
+import com.demo.store.dto.ProductNameDTO;
+import com.demo.store.dto.ProductSuggestionDTO;
+import com.demo.store.dto.StockAdjustmentConflictDTO;
+import com.demo.store.dto.StockAdjustmentDTO;
+import com.demo.store.dto.StockAdjustmentFailureDTO;
+import com.demo.store.dto.StockAdjustmentResultDTO;
 import com.demo.store.dto.UpdateProductDTO;
 import com.demo.store.model.Product;
+import com.demo.store.service.ProductImportResult;
+import com.demo.store.service.StockAdjustment;
+import com.demo.store.service.StockAdjustmentResult;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
@@ -25,6 +37,90 @@ public class ProductMapper {
         return dto;
     }
 
+    /**
+     * Maps the product fields of an order line to ProductDTO
+     * @param line Order line with an item
+     * @return ProductDTO
+     */
+    public ProductDTO toProductDTO(OrderLineDTO line) {
+        ProductDTO dto = new ProductDTO();
+        dto.setId(line.productId());
+        dto.setName(line.productName());
+        dto.setPrice(String.valueOf(line.price()));
+        dto.setStockQuantity(line.stockQuantity());
+        return dto;
+    }
+
+    /**
+     * Maps a product name to ProductSuggestionDTO
+     * @param product Product ID and name
+     * @return ProductSuggestionDTO
+     */
+    public ProductSuggestionDTO toProductSuggestionDTO(ProductNameDTO product) {
+        ProductSuggestionDTO dto = new ProductSuggestionDTO();
+        dto.setId(product.id());
+        dto.setName(product.name());
+        return dto;
+    }
+
+    /**
+     * Maps the summary of a product import to ProductImportResultDTO
+     * @param result Summary of the import
+     * @return ProductImportResultDTO
+     */
+    public ProductImportResultDTO toProductImportResultDTO(ProductImportResult result) {
+        ProductImportResultDTO dto = new ProductImportResultDTO();
+        dto.setInserted(result.inserted());
+        dto.setUpdated(result.updated());
+        dto.setDuplicates(result.duplicates());
+        dto.setRejected(result.rejected());
+        dto.setErrors(result.errors().stream()
+                .map(error -> {
+                    ProductImportErrorDTO errorDTO = new ProductImportErrorDTO();
+                    errorDTO.setLine(error.line());
+                    errorDTO.setMessage(error.message());
+                    return errorDTO;
+                })
+                .toList());
+        return dto;
+    }
+
+    /**
+     * Maps StockAdjustmentDTO to StockAdjustment
+     * @param dto StockAdjustmentDTO
+     * @return StockAdjustment
+     */
+    public StockAdjustment toStockAdjustment(StockAdjustmentDTO dto) {
+        return new StockAdjustment(dto.getProductId(), dto.getDelta(), dto.getAbsolute());
+    }
+
+    /**
+     * Maps the outcome of a bulk stock adjustment to StockAdjustmentResultDTO
+     * @param result Outcome of the adjustment
+     * @return StockAdjustmentResultDTO
+     */
+    public StockAdjustmentResultDTO toStockAdjustmentResultDTO(StockAdjustmentResult result) {
+        StockAdjustmentResultDTO dto = new StockAdjustmentResultDTO();
+        dto.setApplied(result.applied());
+        dto.setConflicts(result.conflicts().stream()
+                .map(conflict -> {
+                    StockAdjustmentConflictDTO conflictDTO = new StockAdjustmentConflictDTO();
+                    conflictDTO.setIndex(conflict.index());
+                    conflictDTO.setProductId(conflict.productId());
+                    conflictDTO.setReason(conflict.reason());
+                    return conflictDTO;
+                })
+                .toList());
+        if (result.failed() != null) {
+            StockAdjustmentFailureDTO failureDTO = new StockAdjustmentFailureDTO();
+            failureDTO.setFrom(result.failed().from());
+            failureDTO.setTo(result.failed().to());
+            failureDTO.setReason(result.failed().reason());
+            dto.setFailed(failureDTO);
+        }
+        return dto;
+    }
+
     /**
      * Maps CreateProductDTO to Product entity
      * @param dto CreateProductDTO
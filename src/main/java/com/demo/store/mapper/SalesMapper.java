@@ -0,0 +1,26 @@
+package com.demo.store.mapper;
+
+import com.demo.store.dto.SalesBucketDTO;
+import com.demo.store.dto.SalesRollupLineDTO;
+import org.springframework.stereotype.Component;
+
+@Component
+public class SalesMapper {
+
+    /**
+     * Maps a sales rollup line to SalesBucketDTO
+     * @param line Sales rollup line
+     * @return SalesBucketDTO
+     */
+    public SalesBucketDTO toSalesBucketDTO(SalesRollupLineDTO line) {
+        SalesBucketDTO dto = new SalesBucketDTO();
+        dto.setBucketStart(line.bucketStart());
+        dto.setProductId(line.productId());
+        dto.setProductName(line.productName());
+        dto.setUnits(line.units());
+        dto.setPaidUnits(line.paidUnits());
+        dto.setRevenue(line.revenue());
+        dto.setPaidRevenue(line.paidRevenue());
+        return dto;
+    }
+}
@@ -0,0 +1,130 @@
+package com.demo.store.metrics;
+
+import com.demo.store.repository.OrderRepository;
+import com.demo.store.service.OrderExpiryMode;
+import com.demo.store.service.OrderExpiryQueue;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Order lifecycle meters that are not covered by @Timed on OrderService.
+ * <p>
+ * Latencies of createOrder, payOrder and cancelOrder are recorded by @Timed as store.orders.create,
+ * store.orders.pay and store.orders.cancel.
+ */
+@Component
+public class OrderMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final OrderRepository orderRepository;
+    private final OrderExpiryQueue orderExpiryQueue;
+    private final OrderExpiryMode expiryMode;
+
+    private final Counter conflictsRetried;
+    private final Counter conflictsRejected;
+    private final Counter insufficientStock;
+    private final Counter idempotentReplayed;
+    private final Counter reapedCancelled;
+    private final Counter reapedSkipped;
+
+    public OrderMetrics(MeterRegistry meterRegistry,
+                        OrderRepository orderRepository,
+                        OrderExpiryQueue orderExpiryQueue,
+                        @Value("${order.expiry.mode:timer}") OrderExpiryMode expiryMode) {
+        this.meterRegistry = meterRegistry;
+        this.orderRepository = orderRepository;
+        this.orderExpiryQueue = orderExpiryQueue;
+        this.expiryMode = expiryMode;
+
+        this.conflictsRetried = conflicts("retried");
+        this.conflictsRejected = conflicts("rejected");
+        this.insufficientStock = Counter.builder("store.orders.rejected")
+                .description("Orders rejected before they were created")
+                .tag("reason", "insufficient_stock")
+                .register(meterRegistry);
+        this.idempotentReplayed = Counter.builder("store.orders.idempotent_replayed")
+                .description("Order requests answered with the stored response of an earlier request with the same Idempotency-Key")
+                .register(meterRegistry);
+        this.reapedCancelled = reaped("cancelled");
+        this.reapedSkipped = reaped("skipped");
+
+        Gauge.builder("store.orders.pending", this, OrderMetrics::countPendingOrders)
+                .description("Unpaid orders waiting for payment or expiry")
+                .strongReference(true)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Count an optimistic lock conflict that is retried
+     */
+    public void conflictRetried() {
+        conflictsRetried.increment();
+    }
+
+    /**
+     * Count an optimistic lock conflict returned to the client
+     */
+    public void conflictRejected() {
+        conflictsRejected.increment();
+    }
+
+    /**
+     * Count an order rejected for insufficient stock
+     */
+    public void insufficientStock() {
+        insufficientStock.increment();
+    }
+
+    /**
+     * Count a request answered from a stored idempotent response
+     */
+    public void idempotentReplayed() {
+        idempotentReplayed.increment();
+    }
+
+    /**
+     * Record one reaper run
+     * @param trigger timer or polling
+     * @param duration Duration of the run
+     * @param cancelled Number of cancelled orders
+     * @param skipped Number of expired candidates skipped because they were paid or cancelled in the meantime
+     */
+    public void reaperRun(String trigger, Duration duration, int cancelled, int skipped) {
+        Timer.builder("store.orders.reaper")
+                .description("Runs of the expired order reaper")
+                .tag("trigger", trigger)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(duration);
+        reapedCancelled.increment(cancelled);
+        reapedSkipped.increment(skipped);
+    }
+
+    private Counter conflicts(String outcome) {
+        return Counter.builder("store.optimistic_lock.conflicts")
+                .description("Optimistic lock conflicts while writing orders and products")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private Counter reaped(String outcome) {
+        return Counter.builder("store.orders.reaped")
+                .description("Expired orders handled by the reaper")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private double countPendingOrders() {
+        // The expiry queue holds exactly the unpaid orders, so the database is only asked in polling mode
+        if (expiryMode == OrderExpiryMode.TIMER) {
+            return orderExpiryQueue.size();
+        }
+        return orderRepository.countByPaid(false);
+    }
+}
@@ -0,0 +1,11 @@
+package com.demo.store.model;
+
+/**
+ * Lifecycle events of an order published to downstream systems
+ */
+public enum OrderEventType {
+    CREATED,
+    PAID,
+    CANCELLED,
+    EXPIRED
+}
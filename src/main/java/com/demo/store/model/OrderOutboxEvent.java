@@ -0,0 +1,37 @@
+package com.demo.store.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Order event written in the transaction that changed the order and removed once relayed to the event log
+ */
+@Entity
+@Table(name = "order_outbox")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderOutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_outbox_seq")
+    @SequenceGenerator(name = "order_outbox_seq", sequenceName = "order_outbox_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16, nullable = false)
+    private OrderEventType type;
+
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+
+    // Quantities per product ID as JSON, null for expired orders
+    @Lob
+    private String items;
+}
@@ -0,0 +1,40 @@
+package com.demo.store.model;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Time bucket of the sales rollups
+ */
+public enum RollupBucket {
+    MINUTE(ChronoUnit.MINUTES),
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+
+    RollupBucket(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * Get the start of the bucket a point in time falls into, the same way DATE_TRUNC does in SQL
+     * @param time Point in time
+     * @return Bucket start
+     */
+    public LocalDateTime truncate(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    /**
+     * Count the buckets between two points in time
+     * @param from Start, inclusive
+     * @param to End, exclusive
+     * @return Number of started buckets
+     */
+    public long count(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime start = truncate(from);
+        long full = unit.between(start, to);
+        return start.plus(full, unit).isBefore(to) ? full + 1 : full;
+    }
+}
@@ -0,0 +1,33 @@
+package com.demo.store.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Units and revenue of a product sold in one time bucket, by order creation time.
+ * Revenue is summed from the sale prices kept on the order items.
+ * Maintained incrementally by SalesRollupService and recomputable from orders and order_items.
+ */
+@Entity
+@Table(name = "sales_rollups")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SalesRollup {
+    @EmbeddedId
+    private SalesRollupId id;
+
+    private long units;
+
+    @Column(name = "paid_units")
+    private long paidUnits;
+
+    private BigDecimal revenue;
+
+    @Column(name = "paid_revenue")
+    private BigDecimal paidRevenue;
+}
@@ -0,0 +1,28 @@
+package com.demo.store.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+@Embeddable
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SalesRollupId implements Serializable {
+    @Enumerated(EnumType.STRING)
+    @Column(name = "bucket_type", length = 8)
+    private RollupBucket bucketType;
+
+    @Column(name = "bucket_start")
+    private LocalDateTime bucketStart;
+
+    @Column(name = "product_id")
+    private Long productId;
+}
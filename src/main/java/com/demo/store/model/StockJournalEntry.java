@@ -0,0 +1,28 @@
+package com.demo.store.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Stock change written by the inventory ledger in the transaction that made it
+ * and removed once the write-behind has applied it to the products table
+ */
+@Entity
+@Table(name = "stock_journal")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockJournalEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_journal_seq")
+    @SequenceGenerator(name = "stock_journal_seq", sequenceName = "stock_journal_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private int delta;
+}
@@ -1,14 +1,51 @@
 package com.demo.store.repository;
 
+import com.demo.store.dto.OrderLineDTO;
 import com.demo.store.model.OrderExtra;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface OrderExtraRepository extends JpaRepository<OrderExtra, Long> {
-    List<OrderExtra> findByPaid(boolean paid);
-    List<OrderExtra> findByPaidFalseAndCreatedAtBefore(LocalDateTime threshold);
-}
\ No newline at end of file
+    @Query("SELECT o.id FROM OrderExtra o WHERE o.paid = false AND o.createdAt < :threshold ORDER BY o.id")
+    List<Long> findExpiredIds(@Param("threshold") LocalDateTime threshold, Pageable pageable);
+
+    @Query("SELECT o.id FROM OrderExtra o WHERE o.id > :afterId ORDER BY o.id")
+    List<Long> findIdsAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    @Query("SELECT o.id FROM OrderExtra o WHERE o.paid = :paid AND o.id > :afterId ORDER BY o.id")
+    List<Long> findIdsByPaidAfter(@Param("paid") boolean paid, @Param("afterId") long afterId, Pageable pageable);
+
+    /**
+     * Read orders with their items and products in one query, straight into DTO rows.
+     * Nothing is loaded into the persistence context.
+     * @param ids Order IDs
+     * @return Order lines ordered by order ID and item ID
+     */
+    @Query("SELECT new com.demo.store.dto.OrderLineDTO(o.id, o.createdAt, o.paid, p.id, p.name, p.price, p.stockQuantity, i.quantity) " +
+            "FROM OrderExtra o LEFT JOIN o.items i LEFT JOIN i.product p WHERE o.id IN :ids ORDER BY o.id, i.id")
+    List<OrderLineDTO> findLinesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Stream all orders with their items through a forward-only cursor.
+     * Must be consumed inside a transaction and closed afterwards.
+     * @return Stream of orders in ID order
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT o FROM OrderExtra o LEFT JOIN FETCH o.items i LEFT JOIN FETCH i.product ORDER BY o.id")
+    Stream<OrderExtra> streamAllWithItems();
+}
@@ -1,10 +1,25 @@
 package com.demo.store.repository;
 
+import com.demo.store.dto.ProductQuantityTotalDTO;
 import com.demo.store.model.OrderProduct;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface OrderProductRepository extends JpaRepository<OrderProduct, Long> {
     boolean existsByProductId(Long productId);
-}
\ No newline at end of file
+
+    @Query("SELECT new com.demo.store.dto.ProductQuantityTotalDTO(i.product.id, o.createdAt, SUM(i.quantity), SUM(i.quantity * i.price)) " +
+            "FROM OrderProduct i JOIN i.order o WHERE o.id IN :orderIds GROUP BY i.product.id, o.createdAt")
+    List<ProductQuantityTotalDTO> sumQuantitiesByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+
+    @Modifying
+    @Query("DELETE FROM OrderProduct i WHERE i.order.id IN :orderIds")
+    int deleteByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+}
@@ -1,12 +1,33 @@
 package com.demo.store.repository;
 
 import com.demo.store.model.Order;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByPaid(boolean paid);
-}
\ No newline at end of file
+
+    long countByPaid(boolean paid);
+
+    /**
+     * Lock the orders that are still unpaid, so they cannot be paid while being cancelled
+     * @param ids Order IDs
+     * @return Locked unpaid orders
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id IN :ids AND o.paid = false")
+    List<Order> lockUnpaidByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM Order o WHERE o.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
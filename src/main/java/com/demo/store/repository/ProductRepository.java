@@ -1,10 +1,71 @@
 package com.demo.store.repository;
 
+import com.demo.store.dto.ProductCatalogVersionDTO;
+import com.demo.store.dto.ProductNameDTO;
+import com.demo.store.dto.ProductStockDTO;
 import com.demo.store.model.Product;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
     Product findByName(String name);
-}
\ No newline at end of file
+
+    @Query("SELECT new com.demo.store.dto.ProductStockDTO(p.id, p.stockQuantity, p.version) FROM Product p")
+    List<ProductStockDTO> findAllStock();
+
+    @Query("SELECT new com.demo.store.dto.ProductCatalogVersionDTO(COUNT(p), COALESCE(SUM(p.version), 0), COALESCE(MAX(p.id), 0)) " +
+            "FROM Product p")
+    ProductCatalogVersionDTO findCatalogVersion();
+
+    @Query("SELECT new com.demo.store.dto.ProductNameDTO(p.id, p.name) FROM Product p")
+    List<ProductNameDTO> findAllNames();
+
+    @Query("SELECT new com.demo.store.dto.ProductNameDTO(p.id, p.name) FROM Product p WHERE p.name IN :names")
+    List<ProductNameDTO> findAllNamesByNameIn(@Param("names") Collection<String> names);
+
+    @Query("SELECT p.id FROM Product p WHERE p.id IN :ids")
+    List<Long> findIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT new com.demo.store.dto.ProductStockDTO(p.id, p.stockQuantity, p.version) FROM Product p WHERE p.id = :id")
+    Optional<ProductStockDTO> findStockById(@Param("id") Long id);
+
+    /**
+     * Decrement stock only if enough is available, bumping the version so optimistic writers notice the change
+     * @param id Product ID
+     * @param quantity Quantity to take from stock
+     * @return Number of updated rows: 0 when the product is missing or stock is insufficient
+     */
+    @Modifying
+    @Query("UPDATE Product p SET p.stockQuantity = p.stockQuantity - :quantity, p.version = p.version + 1 " +
+            "WHERE p.id = :id AND p.stockQuantity >= :quantity")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /**
+     * Load products and lock their rows until the end of the transaction, in ID order to avoid deadlocks
+     * @param ids Product IDs
+     * @return Locked products
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.id IN :ids ORDER BY p.id")
+    List<Product> lockAllByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Return quantity to stock, bumping the version so optimistic writers notice the change
+     * @param id Product ID
+     * @param quantity Quantity to return
+     * @return Number of updated rows
+     */
+    @Modifying
+    @Query("UPDATE Product p SET p.stockQuantity = p.stockQuantity + :quantity, p.version = p.version + 1 WHERE p.id = :id")
+    int incrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+}
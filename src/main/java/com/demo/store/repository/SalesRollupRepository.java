@@ -0,0 +1,26 @@
+package com.demo.store.repository;
+
+import com.demo.store.dto.SalesRollupLineDTO;
+import com.demo.store.model.RollupBucket;
+import com.demo.store.model.SalesRollup;
+import com.demo.store.model.SalesRollupId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SalesRollupRepository extends JpaRepository<SalesRollup, SalesRollupId> {
+    @Query("SELECT new com.demo.store.dto.SalesRollupLineDTO(r.id.bucketStart, r.id.productId, p.name, r.units, r.paidUnits, r.revenue, r.paidRevenue) " +
+            "FROM SalesRollup r LEFT JOIN Product p ON p.id = r.id.productId " +
+            "WHERE r.id.bucketType = :bucket AND r.id.bucketStart >= :from AND r.id.bucketStart < :to " +
+            "AND (:productId IS NULL OR r.id.productId = :productId) AND (r.units <> 0 OR r.paidUnits <> 0) " +
+            "ORDER BY r.id.bucketStart, r.id.productId")
+    List<SalesRollupLineDTO> findLines(@Param("bucket") RollupBucket bucket,
+                                       @Param("from") LocalDateTime from,
+                                       @Param("to") LocalDateTime to,
+                                       @Param("productId") Long productId);
+}
@@ -0,0 +1,9 @@
+package com.demo.store.repository;
+
+import com.demo.store.model.StockJournalEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StockJournalRepository extends JpaRepository<StockJournalEntry, Long> {
+}
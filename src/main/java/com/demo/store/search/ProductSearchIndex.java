@@ -0,0 +1,308 @@
+package com.demo.store.search;
+
+import com.demo.store.dto.ProductNameDTO;
+import com.demo.store.repository.ProductRepository;
+import com.demo.store.util.TransactionUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory typeahead index over product names.
+ * <p>
+ * Names are folded to lower case without diacritics, so 'horka' finds 'Radegast Ryze hořká 12'.
+ * Queries of one or two characters go through a sorted map of words and match word prefixes;
+ * longer queries go through trigram postings and match anywhere in the name, spaces included.
+ * At most max-candidates names holding every trigram of the query are checked: names with a word starting
+ * with the query are taken from the sorted map of words first, and only the rest of the budget is filled
+ * from the smallest posting list of the query, so substring matches cannot crowd out the better ranked ones.
+ * Matches are ranked: whole name, name prefix, word prefix, then substring; ties go to the shorter name.
+ * The index is seeded on startup and kept up to date after commit by every write that changes a name.
+ */
+@Slf4j
+@Component
+public class ProductSearchIndex {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int GRAM = 3;
+
+    private final ProductRepository productRepository;
+    private final int maxCandidates;
+
+    private final Map<Long, IndexedName> names = new ConcurrentHashMap<>();
+    // Postings hold the indexed names themselves, so checking a candidate needs no further lookup
+    private final Map<String, Set<IndexedName>> trigrams = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<String, Set<IndexedName>> words = new ConcurrentSkipListMap<>();
+    // IDs removed while seeding runs, so a name read before the removal is not indexed again
+    private volatile Set<Long> removedWhileSeeding;
+
+    public ProductSearchIndex(ProductRepository productRepository,
+                              @Value("${product.search.max-candidates:1000}") int maxCandidates) {
+        this.productRepository = productRepository;
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * Index all product names once the application is ready.
+     * Requests are already served at that point, so products indexed by a committed write meanwhile are kept
+     * as they are, and products removed meanwhile are not indexed again.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        Set<Long> removed = ConcurrentHashMap.newKeySet();
+        removedWhileSeeding = removed;
+        try {
+            List<ProductNameDTO> products = productRepository.findAllNames();
+            // The removal check runs under the lock of the ID, so a removal either comes first or undoes the put
+            products.forEach(product -> names.computeIfAbsent(product.id(), id -> {
+                if (removed.contains(id)) {
+                    return null;
+                }
+                IndexedName indexed = new IndexedName(id, product.name(), normalize(product.name()));
+                index(indexed);
+                return indexed;
+            }));
+            log.info("Product search index seeded with {} products", products.size());
+        } finally {
+            removedWhileSeeding = null;
+        }
+    }
+
+    /**
+     * Index the name of a product once the current transaction commits, replacing the previous name
+     * @param id Product ID
+     * @param name Product name
+     */
+    public void putAfterCommit(Long id, String name) {
+        TransactionUtils.afterCommit(() -> put(id, name));
+    }
+
+    /**
+     * Remove a product from the index once the current transaction commits
+     * @param id Product ID
+     */
+    public void removeAfterCommit(Long id) {
+        TransactionUtils.afterCommit(() -> remove(id));
+    }
+
+    /**
+     * Index the name of a product, replacing the previous name
+     * @param id Product ID
+     * @param name Product name
+     */
+    public void put(Long id, String name) {
+        IndexedName indexed = new IndexedName(id, name, normalize(name));
+        // Changes of the same product are applied one at a time
+        names.compute(id, (key, previous) -> {
+            if (previous != null) {
+                unindex(previous);
+            }
+            index(indexed);
+            return indexed;
+        });
+    }
+
+    /**
+     * Remove a product from the index
+     * @param id Product ID
+     */
+    public void remove(Long id) {
+        Set<Long> removed = removedWhileSeeding;
+        if (removed != null) {
+            removed.add(id);
+        }
+        names.computeIfPresent(id, (key, previous) -> {
+            unindex(previous);
+            return null;
+        });
+    }
+
+    /**
+     * Find products whose name contains the query, ignoring case and diacritics
+     * @param query Search query
+     * @param limit Max number of results
+     * @return Best matches first
+     */
+    public List<ProductNameDTO> search(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+
+        Comparator<Match> ranking = Comparator.comparingInt(Match::rank)
+                .thenComparingInt(match -> match.name().normalized().length())
+                .thenComparing(match -> match.name().id());
+        String wordPrefix = " " + normalized;
+        // Max-heap of the best matches so far: the worst one is dropped when the heap overflows
+        PriorityQueue<Match> best = new PriorityQueue<>(limit + 1, ranking.reversed());
+        for (IndexedName name : candidates(normalized)) {
+            int rank = rank(name.normalized(), normalized, wordPrefix);
+            if (rank < 0) {
+                continue;
+            }
+            best.add(new Match(name, rank));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        List<Match> matches = new ArrayList<>(best);
+        matches.sort(ranking);
+        return matches.stream()
+                .map(match -> new ProductNameDTO(match.name().id(), match.name().name()))
+                .toList();
+    }
+
+    /**
+     * Get the number of indexed products
+     * @return Number of products
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Fold a text for matching: lower case, no diacritics, words separated by single spaces
+     * @param text Text
+     * @return Normalized text
+     */
+    static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        String folded = DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+        return SEPARATORS.matcher(folded).replaceAll(" ").trim();
+    }
+
+    /**
+     * Get the names worth checking for a normalized query, at most max-candidates of them.
+     * Names with a word starting with the query come first, then names containing it anywhere.
+     * @param normalized Normalized query
+     * @return Candidate names, without duplicates
+     */
+    private Collection<IndexedName> candidates(String normalized) {
+        List<Set<IndexedName>> postings = new ArrayList<>();
+        if (normalized.length() >= GRAM) {
+            for (String gram : trigramsOf(normalized)) {
+                Set<IndexedName> gramPostings = trigrams.get(gram);
+                if (gramPostings == null) {
+                    return List.of();
+                }
+                postings.add(gramPostings);
+            }
+            postings.sort(Comparator.comparingInt(Set::size));
+        }
+
+        // A name may have several words with the same prefix
+        Set<IndexedName> candidates = new LinkedHashSet<>();
+        // The first word of the query must start a word of a whole name, name prefix or word prefix match
+        String firstWord = SEPARATORS.split(normalized, 2)[0];
+        for (Set<IndexedName> wordPostings : words.subMap(firstWord, firstWord + Character.MAX_VALUE).values()) {
+            for (IndexedName name : wordPostings) {
+                if (containsAll(postings, name) && candidates.add(name) && candidates.size() >= maxCandidates) {
+                    return candidates;
+                }
+            }
+        }
+        if (postings.isEmpty()) {
+            return candidates;
+        }
+
+        List<Set<IndexedName>> others = postings.subList(1, postings.size());
+        for (IndexedName name : postings.get(0)) {
+            if (containsAll(others, name) && candidates.add(name) && candidates.size() >= maxCandidates) {
+                break;
+            }
+        }
+        return candidates;
+    }
+
+    private static boolean containsAll(List<Set<IndexedName>> postings, IndexedName name) {
+        return postings.stream().allMatch(gramPostings -> gramPostings.contains(name));
+    }
+
+    /**
+     * Rank a name against a query, lower is better
+     * @param name Normalized name
+     * @param query Normalized query
+     * @param wordPrefix Normalized query preceded by a space
+     * @return 0 for the whole name, 1 for a name prefix, 2 for a word prefix, 3 for a substring, -1 for no match
+     */
+    private static int rank(String name, String query, String wordPrefix) {
+        if (name.equals(query)) {
+            return 0;
+        }
+        if (name.startsWith(query)) {
+            return 1;
+        }
+        if (name.contains(wordPrefix)) {
+            return 2;
+        }
+        return name.contains(query) ? 3 : -1;
+    }
+
+    private void index(IndexedName name) {
+        trigramsOf(name.normalized()).forEach(gram -> addPosting(trigrams, gram, name));
+        wordsOf(name.normalized()).forEach(word -> addPosting(words, word, name));
+    }
+
+    private void unindex(IndexedName name) {
+        trigramsOf(name.normalized()).forEach(gram -> removePosting(trigrams, gram, name));
+        wordsOf(name.normalized()).forEach(word -> removePosting(words, word, name));
+    }
+
+    /**
+     * Add a name to a posting list.
+     * Adding and removing both run inside compute, so a name is never added to a list that was just dropped.
+     */
+    private static void addPosting(Map<String, Set<IndexedName>> postings, String key, IndexedName name) {
+        postings.compute(key, (k, names) -> {
+            Set<IndexedName> updated = names == null ? ConcurrentHashMap.newKeySet() : names;
+            updated.add(name);
+            return updated;
+        });
+    }
+
+    private static void removePosting(Map<String, Set<IndexedName>> postings, String key, IndexedName name) {
+        postings.computeIfPresent(key, (k, names) -> {
+            names.remove(name);
+            return names.isEmpty() ? null : names;
+        });
+    }
+
+    private static Set<String> trigramsOf(String normalized) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= normalized.length(); i++) {
+            grams.add(normalized.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static Set<String> wordsOf(String normalized) {
+        return normalized.isEmpty() ? Set.of() : new HashSet<>(Arrays.asList(SEPARATORS.split(normalized)));
+    }
+
+    private record IndexedName(Long id, String name, String normalized) {
+    }
+
+    private record Match(IndexedName name, int rank) {
+    }
+}
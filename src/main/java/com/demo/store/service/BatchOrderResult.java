@@ -0,0 +1,23 @@
+package com.demo.store.service;
+
+import com.demo.store.model.OrderExtra;
+
+/**
+ * Result of one order of a batch: either the created order or the reason it was rejected
+ * @param order Created order, null if rejected
+ * @param error Reason of the rejection, null if created
+ */
+public record BatchOrderResult(OrderExtra order, String error) {
+
+    public static BatchOrderResult created(OrderExtra order) {
+        return new BatchOrderResult(order, null);
+    }
+
+    public static BatchOrderResult rejected(String error) {
+        return new BatchOrderResult(null, error);
+    }
+
+    public boolean isCreated() {
+        return order != null;
+    }
+}
@@ -0,0 +1,237 @@
+package com.demo.store.service;
+
+import com.demo.store.exception.IdempotencyConflictException;
+import com.demo.store.metrics.OrderMetrics;
+import com.demo.store.repository.IdempotencyKeyRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs a request at most once per Idempotency-Key and answers repeated requests with the first response.
+ * <p>
+ * Responses are kept in a bounded cache that evicts by size and TTL, backed by the idempotency_keys table,
+ * so a key is honoured across restarts and cache evictions until the TTL has passed. The action writes the key
+ * and its response in its own transaction, so a committed result and its stored response always exist together;
+ * if the action fails, nothing is written and the key can be used again. Concurrent requests with the same key
+ * on this instance wait for the one in flight instead of running the action a second time. On another instance
+ * the second write of the key fails, which rolls back that action, and the stored response is returned instead.
+ * A key is bound to a fingerprint of its request, so reusing it for a different request is a conflict.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private static final String STORE_RESPONSE =
+            "INSERT INTO idempotency_keys (idempotency_key, request_hash, response, created_at) VALUES (?, ?, ?, ?)";
+    private static final String PURGE_KEYS =
+            "DELETE FROM idempotency_keys WHERE created_at < ?";
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final OrderMetrics orderMetrics;
+    private final Cache<String, StoredResponse> responses;
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Duration ttl;
+    private final long waitTimeoutMs;
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository,
+                              JdbcTemplate jdbcTemplate,
+                              ObjectMapper objectMapper,
+                              OrderMetrics orderMetrics,
+                              MeterRegistry meterRegistry,
+                              @Value("${order.idempotency.maximum-size:10000}") long maximumSize,
+                              @Value("${order.idempotency.ttl-minutes:1440}") long ttlMinutes,
+                              @Value("${order.idempotency.wait-timeout-ms:5000}") long waitTimeoutMs) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.orderMetrics = orderMetrics;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.waitTimeoutMs = waitTimeoutMs;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, "idempotencyKeys");
+    }
+
+    /**
+     * Run an action once per key
+     * @param key Idempotency-Key sent by the client
+     * @param request Request the key is bound to
+     * @param type Type of the response
+     * @param action Action that commits its own transaction and returns the response. It is given a callback
+     *               that stores the response and must be called once inside that transaction.
+     * @return Response of the action, or the stored response of an earlier request with the same key
+     * @throws IllegalArgumentException If the key is blank or too long
+     * @throws IdempotencyConflictException If the key was used for a different request or its request is still in progress
+     */
+    public <T> IdempotentResult<T> execute(String key, Object request, Class<T> type, Function<Consumer<T>, T> action) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key must have 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String requestHash = fingerprint(request);
+        while (true) {
+            StoredResponse cached = responses.getIfPresent(key);
+            if (cached != null) {
+                return replay(key, cached, requestHash, type);
+            }
+
+            CompletableFuture<StoredResponse> claim = new CompletableFuture<>();
+            CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(key, claim);
+            if (running != null) {
+                StoredResponse stored = await(key, running);
+                if (stored == null) {
+                    // The request in flight failed without using up the key, so this one runs the action itself
+                    continue;
+                }
+                return replay(key, stored, requestHash, type);
+            }
+
+            try {
+                return lead(key, requestHash, type, action, claim);
+            } finally {
+                inFlight.remove(key, claim);
+            }
+        }
+    }
+
+    /**
+     * Delete keys older than the TTL, after which a key may be used again
+     */
+    @Scheduled(fixedDelayString = "${order.idempotency.purge-interval-ms:600000}")
+    public void purge() {
+        int purged = jdbcTemplate.update(PURGE_KEYS, LocalDateTime.now().minus(ttl));
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    /**
+     * Run the action as the only request of this instance with the key, unless the table already knows the key.
+     * Followers are always released through the claim future: with the stored response, or with null on failure.
+     */
+    private <T> IdempotentResult<T> lead(String key, String requestHash, Class<T> type, Function<Consumer<T>, T> action,
+                                         CompletableFuture<StoredResponse> claim) {
+        StoredResponse stored = null;
+        try {
+            Optional<StoredResponse> existing = findStored(key);
+            if (existing.isPresent()) {
+                stored = existing.get();
+                responses.put(key, stored);
+                return replay(key, stored, requestHash, type);
+            }
+
+            AtomicReference<StoredResponse> written = new AtomicReference<>();
+            T value;
+            try {
+                value = action.apply(response -> {
+                    StoredResponse attempt = new StoredResponse(requestHash, toJson(response));
+                    jdbcTemplate.update(STORE_RESPONSE, key, requestHash, attempt.response(), LocalDateTime.now());
+                    written.set(attempt);
+                });
+            } catch (DuplicateKeyException e) {
+                // Stored by another instance in the meantime; the action of this request was rolled back
+                stored = findStored(key).orElseThrow(() -> e);
+                responses.put(key, stored);
+                return replay(key, stored, requestHash, type);
+            }
+            if (written.get() == null) {
+                throw new IllegalStateException("Response of idempotency key " + key + " was not stored by the action");
+            }
+            stored = written.get();
+            responses.put(key, stored);
+            return new IdempotentResult<>(value, false);
+        } finally {
+            claim.complete(stored);
+        }
+    }
+
+    private Optional<StoredResponse> findStored(String key) {
+        return idempotencyKeyRepository.findById(key)
+                .map(row -> new StoredResponse(row.getRequestHash(), row.getResponse()));
+    }
+
+    private StoredResponse await(String key, CompletableFuture<StoredResponse> running) {
+        try {
+            return running.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Request with idempotency key {} still in progress after {} ms", key, waitTimeoutMs);
+            throw new IdempotencyConflictException("A request with this idempotency key is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("A request with this idempotency key is still in progress");
+        } catch (ExecutionException e) {
+            // The claim future is never completed exceptionally
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private <T> IdempotentResult<T> replay(String key, StoredResponse stored, String requestHash, Class<T> type) {
+        if (!stored.requestHash().equals(requestHash)) {
+            log.warn("Idempotency key {} reused for a different request", key);
+            throw new IdempotencyConflictException("Idempotency key was already used for a different request");
+        }
+        orderMetrics.idempotentReplayed();
+        try {
+            return new IdempotentResult<>(objectMapper.readValue(stored.response(), type), true);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored response of idempotency key " + key + " cannot be read", e);
+        }
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(hash);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Request cannot be fingerprinted", e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Response cannot be stored", e);
+        }
+    }
+
+    /**
+     * Response stored for a key
+     * @param requestHash Fingerprint of the request that produced it
+     * @param response Response as JSON
+     */
+    private record StoredResponse(String requestHash, String response) {
+    }
+}
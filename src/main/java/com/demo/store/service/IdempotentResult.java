@@ -0,0 +1,9 @@
+package com.demo.store.service;
+
+/**
+ * Response of a request made with an Idempotency-Key
+ * @param value Response
+ * @param replayed true if the response was stored by an earlier request with the same key
+ */
+public record IdempotentResult<T>(T value, boolean replayed) {
+}
@@ -0,0 +1,283 @@
+package com.demo.store.service;
+
+import com.demo.store.cache.ProductCache;
+import com.demo.store.exception.NotFoundException;
+import com.demo.store.model.StockJournalEntry;
+import com.demo.store.repository.StockJournalRepository;
+import com.demo.store.util.TransactionUtils;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process inventory used by the IN_MEMORY stock reservation mode.
+ * <p>
+ * Available stock per product is held in lock-free counters, so reservations never wait on product rows.
+ * Every change is appended to the stock journal in the transaction that makes it, so it survives a crash,
+ * and a write-behind flusher moves the journal to the products table as net deltas per product.
+ * At any time: counter = database stock + journaled deltas - uncommitted reservations.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InventoryLedger {
+
+    private static final String APPLY_STOCK_DELTA =
+            "UPDATE products SET stock = stock + ?, version = version + 1 WHERE id = ?";
+    private static final String SELECT_JOURNAL = "SELECT id, product_id, delta FROM stock_journal";
+    private static final String DELETE_JOURNAL = "DELETE FROM stock_journal WHERE id = ?";
+    // One statement, so a concurrent flush cannot move a delta between the two tables while it is read
+    private static final String SELECT_STOCK =
+            "SELECT p.id, p.stock + COALESCE(SUM(j.delta), 0) FROM products p " +
+            "LEFT JOIN stock_journal j ON j.product_id = p.id";
+    private static final String GROUP_BY_PRODUCT = " GROUP BY p.id, p.stock";
+
+    private final StockJournalRepository stockJournalRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductCache productCache;
+
+    private final Map<Long, AtomicInteger> available = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // Entries may be left in the journal from before a restart, so the first flush always looks
+    private final AtomicBoolean pending = new AtomicBoolean(true);
+
+    @Value("${order.stock-reservation-mode:optimistic}")
+    private StockReservationMode stockReservationMode = StockReservationMode.OPTIMISTIC;
+
+    /**
+     * Check if the ledger is the source of truth for stock reservations
+     * @return true when order.stock-reservation-mode is in-memory
+     */
+    public boolean isEnabled() {
+        return stockReservationMode == StockReservationMode.IN_MEMORY;
+    }
+
+    /**
+     * Seed the counters once the application is ready from the products table plus the journaled deltas
+     * that were not flushed yet, so changes committed right before a crash are not handed out again.
+     * Requests are already served at that point, so counters loaded on first use meanwhile are kept as they are.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        if (!isEnabled()) {
+            return;
+        }
+        jdbcTemplate.query(SELECT_STOCK + GROUP_BY_PRODUCT,
+                rs -> { available.putIfAbsent(rs.getLong(1), new AtomicInteger(rs.getInt(2))); });
+        log.info("Inventory ledger seeded with {} products", available.size());
+    }
+
+    /**
+     * Reserve all requested quantities or none of them.
+     * The reservation is journaled in the current transaction and returned to stock on rollback.
+     * @param requested Map of product ID to requested quantity
+     * @return ID of the first product without enough stock, empty if everything was reserved
+     */
+    public Optional<Long> reserve(Map<Long, Integer> requested) {
+        Map<Long, Integer> taken = new LinkedHashMap<>();
+        for (Map.Entry<Long, Integer> entry : requested.entrySet()) {
+            if (!tryTake(counter(entry.getKey()), entry.getValue())) {
+                taken.forEach((id, quantity) -> counter(id).addAndGet(quantity));
+                return Optional.of(entry.getKey());
+            }
+            taken.put(entry.getKey(), entry.getValue());
+        }
+        journal(taken, -1);
+        TransactionUtils.afterCompletion(
+                () -> pending.set(true),
+                () -> taken.forEach((id, quantity) -> counter(id).addAndGet(quantity))
+        );
+        return Optional.empty();
+    }
+
+    /**
+     * Return quantities to stock once the current transaction commits.
+     * The release is journaled in the current transaction.
+     * @param released Map of product ID to released quantity
+     */
+    public void release(Map<Long, Integer> released) {
+        journal(released, 1);
+        TransactionUtils.afterCommit(() -> {
+            released.forEach((id, quantity) -> counter(id).addAndGet(quantity));
+            pending.set(true);
+        });
+    }
+
+    /**
+     * Change the available stock of a product right away, unless it would drop below zero.
+     * The change is journaled in the current transaction and undone on rollback.
+     * @param id Product ID
+     * @param delta Change of the available stock
+     * @return true if the change was applied
+     */
+    public boolean adjust(Long id, int delta) {
+        AtomicInteger counter = counter(id);
+        if (delta < 0) {
+            if (!tryTake(counter, -delta)) {
+                return false;
+            }
+        } else {
+            counter.addAndGet(delta);
+        }
+        journal(Map.of(id, delta), 1);
+        TransactionUtils.afterCompletion(
+                () -> pending.set(true),
+                () -> counter.addAndGet(-delta)
+        );
+        return true;
+    }
+
+    /**
+     * Set the available stock of a product right away, so later changes in the same transaction see the new value.
+     * The difference to the previous value is journaled in the current transaction and undone on rollback,
+     * so in-flight reservations and unflushed deltas stay accounted for.
+     * @param id Product ID
+     * @param stockQuantity New available stock
+     */
+    public void adjustTo(Long id, int stockQuantity) {
+        AtomicInteger counter = counter(id);
+        int difference = stockQuantity - counter.getAndSet(stockQuantity);
+        journal(Map.of(id, difference), 1);
+        TransactionUtils.afterCompletion(
+                () -> pending.set(true),
+                () -> counter.addAndGet(-difference)
+        );
+    }
+
+    /**
+     * Forget a product once the current transaction commits; its journaled deltas no longer match a row
+     * and are dropped by the next flush
+     * @param id Product ID
+     */
+    public void remove(Long id) {
+        TransactionUtils.afterCommit(() -> available.remove(id));
+    }
+
+    /**
+     * Get the available stock of a product as seen by the ledger
+     * @param id Product ID
+     * @return Available stock
+     */
+    public int getAvailable(Long id) {
+        return counter(id).get();
+    }
+
+    /**
+     * Apply the journaled deltas to the products table as one JDBC batch of net deltas
+     * and delete them in the same transaction
+     */
+    @Scheduled(fixedDelayString = "${order.inventory.flush-interval-ms:1000}")
+    @PreDestroy
+    public void flush() {
+        if (!isEnabled()) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            // Cleared before reading, so a commit landing during the flush is picked up by the next one
+            if (!pending.getAndSet(false)) {
+                return;
+            }
+            Integer flushed = transactionTemplate.execute(status -> flushJournal());
+            if (flushed != null && flushed > 0) {
+                log.debug("Inventory ledger flushed stock changes of {} products", flushed);
+            }
+        } catch (RuntimeException e) {
+            log.error("Inventory ledger flush failed and will be retried: {}", e.getMessage());
+            pending.set(true);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Move the journal to the products table in the current transaction
+     * @return Number of products whose stock changed
+     */
+    private Integer flushJournal() {
+        List<Object[]> entries = new ArrayList<>();
+        Map<Long, Integer> deltas = new HashMap<>();
+        jdbcTemplate.query(SELECT_JOURNAL, rs -> {
+            entries.add(new Object[]{rs.getLong(1)});
+            deltas.merge(rs.getLong(2), rs.getInt(3), Integer::sum);
+        });
+        if (entries.isEmpty()) {
+            return 0;
+        }
+
+        List<Object[]> batch = new ArrayList<>();
+        deltas.forEach((id, delta) -> {
+            if (delta != 0) {
+                batch.add(new Object[]{delta, id});
+            }
+        });
+        jdbcTemplate.batchUpdate(APPLY_STOCK_DELTA, batch);
+        jdbcTemplate.batchUpdate(DELETE_JOURNAL, entries);
+        productCache.evictAfterCommit(batch.stream().map(row -> (Long) row[1]).toList());
+        return batch.size();
+    }
+
+    /**
+     * Get the counter of a product, loading it from the database on first use.
+     * The load runs outside of the map lock, so a caller waiting for the database does not pin its carrier thread.
+     * @param id Product ID
+     * @return Counter of available stock
+     */
+    private AtomicInteger counter(Long id) {
+        AtomicInteger counter = available.get(id);
+        if (counter != null) {
+            return counter;
+        }
+        // Stock of a product without a counter can only change through this ledger, so a concurrent load reads the same value
+        List<Integer> stock = jdbcTemplate.query(SELECT_STOCK + " WHERE p.id = ?" + GROUP_BY_PRODUCT,
+                (rs, rowNum) -> rs.getInt(2), id);
+        if (stock.isEmpty()) {
+            log.warn("Product with ID {} not found in the inventory ledger", id);
+            throw new NotFoundException("Product not found");
+        }
+        AtomicInteger loaded = new AtomicInteger(stock.get(0));
+        counter = available.putIfAbsent(id, loaded);
+        return counter != null ? counter : loaded;
+    }
+
+    /**
+     * Append changes to the stock journal in the current transaction
+     * @param quantities Map of product ID to quantity
+     * @param sign 1 to journal the quantities as they are, -1 to journal them as withdrawals
+     */
+    private void journal(Map<Long, Integer> quantities, int sign) {
+        stockJournalRepository.saveAll(quantities.entrySet().stream()
+                .map(entry -> new StockJournalEntry(null, entry.getKey(), sign * entry.getValue()))
+                .toList());
+    }
+
+    private static boolean tryTake(AtomicInteger counter, int quantity) {
+        int current;
+        do {
+            current = counter.get();
+            if (current < quantity) {
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current - quantity));
+        return true;
+    }
+}
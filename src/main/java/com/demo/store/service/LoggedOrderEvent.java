@@ -0,0 +1,9 @@
+package com.demo.store.service;
+
+/**
+ * Order event read from the event log
+ * @param offset Offset of the event in the log
+ * @param event Event
+ */
+public record LoggedOrderEvent(long offset, OrderEvent event) {
+}
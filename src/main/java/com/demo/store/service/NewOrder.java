@@ -0,0 +1,14 @@
+package com.demo.store.service;
+
+import com.demo.store.model.Order;
+import com.demo.store.model.OrderProduct;
+
+import java.util.List;
+
+/**
+ * Order to be created together with its items
+ * @param order Order to create
+ * @param items Items of the order
+ */
+public record NewOrder(Order order, List<OrderProduct> items) {
+}
@@ -0,0 +1,17 @@
+package com.demo.store.service;
+
+import com.demo.store.model.OrderEventType;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Order event as stored in the event log
+ * @param eventId ID of the outbox row the event was relayed from
+ * @param orderId Order ID
+ * @param type Type of the event
+ * @param occurredAt Time of the change
+ * @param items Quantities per product ID, null for expired orders
+ */
+public record OrderEvent(Long eventId, Long orderId, OrderEventType type, LocalDateTime occurredAt, Map<Long, Integer> items) {
+}
@@ -0,0 +1,77 @@
+package com.demo.store.service;
+
+import com.demo.store.model.OrderEventType;
+import com.demo.store.model.OrderOutboxEvent;
+import com.demo.store.repository.OrderOutboxRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes order lifecycle events to the outbox table in the transaction that changes the order,
+ * so an event exists if and only if its change was committed. {@link OrderEventService} relays them to the event log.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderEventOutbox {
+
+    private final OrderOutboxRepository orderOutboxRepository;
+    private final OrderEventService orderEventService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Record the creation of an order
+     * @param orderId Order ID
+     * @param quantities Map of product ID to ordered quantity
+     */
+    public void orderCreated(Long orderId, Map<Long, Integer> quantities) {
+        save(List.of(event(orderId, OrderEventType.CREATED, quantities)));
+    }
+
+    /**
+     * Record the payment of an order
+     * @param orderId Order ID
+     * @param quantities Map of product ID to ordered quantity
+     */
+    public void orderPaid(Long orderId, Map<Long, Integer> quantities) {
+        save(List.of(event(orderId, OrderEventType.PAID, quantities)));
+    }
+
+    /**
+     * Record the cancellation of an order
+     * @param orderId Order ID
+     * @param quantities Map of product ID to ordered quantity
+     */
+    public void orderCancelled(Long orderId, Map<Long, Integer> quantities) {
+        save(List.of(event(orderId, OrderEventType.CANCELLED, quantities)));
+    }
+
+    /**
+     * Record the expiry of unpaid orders
+     * @param orderIds IDs of the expired orders
+     */
+    public void ordersExpired(List<Long> orderIds) {
+        save(orderIds.stream()
+                .map(orderId -> event(orderId, OrderEventType.EXPIRED, null))
+                .toList());
+    }
+
+    private void save(List<OrderOutboxEvent> events) {
+        orderOutboxRepository.saveAll(events);
+        orderEventService.relayAfterCommit();
+    }
+
+    private OrderOutboxEvent event(Long orderId, OrderEventType type, Map<Long, Integer> quantities) {
+        try {
+            String items = quantities == null ? null : objectMapper.writeValueAsString(quantities);
+            return new OrderOutboxEvent(null, orderId, type, LocalDateTime.now(), items);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Order event cannot be serialized", e);
+        }
+    }
+}
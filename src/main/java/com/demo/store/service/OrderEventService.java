@@ -0,0 +1,209 @@
+package com.demo.store.service;
+
+import com.demo.store.eventlog.LogRecord;
+import com.demo.store.eventlog.OrderEventLog;
+import com.demo.store.model.OrderEventType;
+import com.demo.store.util.TransactionUtils;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Relays order events from the outbox table to the event log and reads them back for consumers.
+ * <p>
+ * The relay appends a batch of outbox rows to the log, forces it to disk and only then deletes the rows,
+ * so no committed event is lost. A crash between the two steps relays the batch again: delivery is
+ * at least once, and consumers that must not see an event twice skip event IDs they have already seen.
+ * Each batch is claimed with row locks and deleted in the same transaction, so relays of several instances
+ * on one database never append the same rows; a batch locked by another relay is skipped, not waited for.
+ * The relay only queries the outbox after a commit has written to it, so an idle store causes no database load.
+ * Consumers read the log by offset without touching the database at all.
+ * <p>
+ * The log outlives the in-memory database, whose sequences start over on every boot. Before the web server
+ * starts, the outbox and order sequences are therefore moved past the highest event and order IDs of the
+ * newest events in the log, so an event ID never stands for two different events.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderEventService implements SmartInitializingSingleton {
+
+    private static final String SELECT_OUTBOX =
+            "SELECT id, order_id, type, occurred_at, items FROM order_outbox ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String DELETE_OUTBOX = "DELETE FROM order_outbox WHERE id = ?";
+    private static final TypeReference<Map<Long, Integer>> ITEMS = new TypeReference<>() { };
+    private static final String SELECT_SEQUENCE_NEXT =
+            "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = UPPER(?)";
+    // Pooled sequences hand out the block below the value they return, so they restart one allocation past the max ID
+    private static final int ALLOCATION_SIZE = 50;
+
+    private final OrderEventLog orderEventLog;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    // Rows may be left in the outbox from before a restart, so the first run always looks
+    private final AtomicBoolean pending = new AtomicBoolean(true);
+    // Keeps relay runs in log order without pinning a virtual thread
+    private final ReentrantLock relayLock = new ReentrantLock();
+
+    @Value("${order.events.relay-batch-size:500}")
+    private int relayBatchSize = 500;
+
+    @Value("${order.events.max-read:1000}")
+    private int maxRead = 1000;
+
+    @Value("${order.events.id-scan-records:131072}")
+    private int idScanRecords = 131072;
+
+    /**
+     * Move the outbox and order sequences past the IDs of the newest events in the log.
+     * Runs once all beans are created, after the seed script or snapshot restore has set the sequences,
+     * and before the web server accepts orders.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        long end = orderEventLog.endOffset();
+        long offset = Math.max(0, end - idScanRecords);
+        long maxEventId = 0;
+        long maxOrderId = 0;
+        while (offset < end) {
+            List<LogRecord> records = orderEventLog.read(offset, maxRead);
+            if (records.isEmpty()) {
+                break;
+            }
+            for (LogRecord record : records) {
+                OrderEvent event = toLoggedOrderEvent(record).event();
+                maxEventId = Math.max(maxEventId, event.eventId());
+                maxOrderId = Math.max(maxOrderId, event.orderId());
+            }
+            offset += records.size();
+        }
+        restartSequencePast("order_outbox_seq", maxEventId);
+        restartSequencePast("orders_seq", maxOrderId);
+    }
+
+    /**
+     * Let the relay know that the outbox has new rows once the current transaction commits
+     */
+    public void relayAfterCommit() {
+        TransactionUtils.afterCommit(() -> pending.set(true));
+    }
+
+    /**
+     * Move the outbox rows to the event log in batches until the outbox is empty
+     */
+    @Scheduled(fixedDelayString = "${order.events.relay-interval-ms:200}")
+    @PreDestroy
+    public void relay() {
+        relayLock.lock();
+        try {
+            // Reset under the lock: a commit that flags new rows while a run is in progress is seen by the next run
+            if (!pending.getAndSet(false)) {
+                return;
+            }
+            int relayed;
+            do {
+                relayed = transactionTemplate.execute(status -> relayBatch());
+            } while (relayed == relayBatchSize);
+        } catch (RuntimeException e) {
+            pending.set(true);
+            log.error("Order event relay failed, it will be retried: {}", e.getMessage());
+        } finally {
+            relayLock.unlock();
+        }
+    }
+
+    /**
+     * Read order events from the log
+     * @param fromOffset Offset of the first event
+     * @param limit Max number of events
+     * @return Events in offset order, empty if there are no events at or after the offset yet
+     * @throws IllegalArgumentException If the offset is negative or the limit out of range
+     */
+    public List<LoggedOrderEvent> readEvents(long fromOffset, int limit) {
+        if (fromOffset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative");
+        }
+        if (limit < 1 || limit > maxRead) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + maxRead);
+        }
+        return orderEventLog.read(fromOffset, limit).stream()
+                .map(this::toLoggedOrderEvent)
+                .toList();
+    }
+
+    /**
+     * Relay the oldest outbox rows that no other relay has claimed, in the current transaction
+     * @return Number of relayed events
+     */
+    private int relayBatch() {
+        List<OrderEvent> events = jdbcTemplate.query(SELECT_OUTBOX, (rs, rowNum) -> new OrderEvent(
+                rs.getLong("id"),
+                rs.getLong("order_id"),
+                OrderEventType.valueOf(rs.getString("type")),
+                rs.getObject("occurred_at", LocalDateTime.class),
+                readItems(rs.getString("items"))), relayBatchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        long firstOffset = orderEventLog.append(events.stream().map(this::toBytes).toList());
+        jdbcTemplate.batchUpdate(DELETE_OUTBOX, events.stream().map(event -> new Object[]{event.eventId()}).toList());
+        log.debug("Relayed {} order events to offsets {} to {}", events.size(), firstOffset, firstOffset + events.size() - 1);
+        return events.size();
+    }
+
+    private void restartSequencePast(String sequence, long maxId) {
+        if (maxId == 0) {
+            return;
+        }
+        long restartWith = maxId + 1 + ALLOCATION_SIZE;
+        Long next = jdbcTemplate.queryForObject(SELECT_SEQUENCE_NEXT, Long.class, sequence);
+        if (next == null || next >= restartWith) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + restartWith);
+        log.info("Sequence {} restarted at {}, past ID {} in the order event log", sequence, restartWith, maxId);
+    }
+
+    private Map<Long, Integer> readItems(String items) {
+        try {
+            return items == null ? null : objectMapper.readValue(items, ITEMS);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] toBytes(OrderEvent event) {
+        try {
+            return objectMapper.writeValueAsBytes(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private LoggedOrderEvent toLoggedOrderEvent(LogRecord record) {
+        try {
+            return new LoggedOrderEvent(record.offset(), objectMapper.readValue(record.payload(), OrderEvent.class));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
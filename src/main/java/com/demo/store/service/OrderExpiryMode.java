@@ -0,0 +1,15 @@
+package com.demo.store.service;
+
+/**
+ * How OrderService finds unpaid orders whose lifetime is over
+ */
+public enum OrderExpiryMode {
+    /**
+     * Keep the deadline of every unpaid order in OrderExpiryQueue and cancel each order when its deadline is due
+     */
+    TIMER,
+    /**
+     * Query the database for expired orders every order.check-interval-ms
+     */
+    POLLING
+}
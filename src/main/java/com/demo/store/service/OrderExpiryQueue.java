@@ -0,0 +1,147 @@
+package com.demo.store.service;
+
+import com.demo.store.util.TransactionUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory deadlines of unpaid orders, used by the TIMER expiry mode.
+ * <p>
+ * The map holds the current deadline of every scheduled order and is the source of truth; the delay queue
+ * only orders deadlines by time. Removing or rescheduling an order leaves its old queue entry behind,
+ * which is skipped when it becomes due.
+ */
+@Slf4j
+@Component
+public class OrderExpiryQueue {
+
+    private final DelayQueue<Deadline> queue = new DelayQueue<>();
+    private final Map<Long, Deadline> deadlines = new ConcurrentHashMap<>();
+
+    @Value("${order.expiration-time-minutes}")
+    private int orderExpirationTime;
+
+    /**
+     * Schedule the expiry of an order
+     * @param orderId Order ID
+     * @param createdAt Creation time of the order
+     */
+    public void schedule(Long orderId, LocalDateTime createdAt) {
+        long expiresAt = createdAt.plusMinutes(orderExpirationTime)
+                .atZone(ZoneId.systemDefault())
+                .toInstant()
+                .toEpochMilli();
+        add(new Deadline(orderId, expiresAt));
+    }
+
+    /**
+     * Schedule the expiry of an order once the current transaction commits
+     * @param orderId Order ID
+     * @param createdAt Creation time of the order
+     */
+    public void scheduleAfterCommit(Long orderId, LocalDateTime createdAt) {
+        TransactionUtils.afterCommit(() -> schedule(orderId, createdAt));
+    }
+
+    /**
+     * Check the given orders again after a delay, e.g. when cancelling them failed
+     * @param orderIds Order IDs
+     * @param delay Delay before the orders are due again
+     */
+    public void postpone(List<Long> orderIds, Duration delay) {
+        long expiresAt = System.currentTimeMillis() + delay.toMillis();
+        orderIds.forEach(orderId -> add(new Deadline(orderId, expiresAt)));
+    }
+
+    /**
+     * Forget an order once the current transaction commits, e.g. when it was paid or cancelled
+     * @param orderId Order ID
+     */
+    public void removeAfterCommit(Long orderId) {
+        TransactionUtils.afterCommit(() -> deadlines.remove(orderId));
+    }
+
+    /**
+     * Wait until at least one order is due and take up to max due orders
+     * @param max Max number of returned order IDs
+     * @return IDs of due orders, never empty
+     * @throws InterruptedException if the waiting thread was interrupted
+     */
+    public List<Long> takeDue(int max) throws InterruptedException {
+        List<Long> due = new ArrayList<>();
+        while (due.isEmpty()) {
+            collect(queue.take(), due);
+            List<Deadline> more = new ArrayList<>();
+            queue.drainTo(more, max - due.size());
+            more.forEach(deadline -> collect(deadline, due));
+        }
+        return due;
+    }
+
+    /**
+     * Drop all scheduled orders
+     */
+    public void clear() {
+        deadlines.clear();
+        queue.clear();
+    }
+
+    /**
+     * Get the number of scheduled orders
+     * @return Number of scheduled orders
+     */
+    public int size() {
+        return deadlines.size();
+    }
+
+    private void add(Deadline deadline) {
+        deadlines.put(deadline.orderId(), deadline);
+        queue.put(deadline);
+    }
+
+    private void collect(Deadline deadline, List<Long> due) {
+        // Skip entries of orders that were removed or rescheduled in the meantime
+        if (deadlines.remove(deadline.orderId(), deadline)) {
+            due.add(deadline.orderId());
+        }
+    }
+
+    /**
+     * Queue entry, compared by identity so a rescheduled order never matches its old entry
+     */
+    private static final class Deadline implements Delayed {
+        private final Long orderId;
+        private final long expiresAt;
+
+        private Deadline(Long orderId, long expiresAt) {
+            this.orderId = orderId;
+            this.expiresAt = expiresAt;
+        }
+
+        private Long orderId() {
+            return orderId;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiresAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiresAt, ((Deadline) other).expiresAt);
+        }
+    }
+}
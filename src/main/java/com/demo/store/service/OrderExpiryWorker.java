@@ -0,0 +1,84 @@
+package com.demo.store.service;
+
+import com.demo.store.model.Order;
+import com.demo.store.repository.OrderRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Background thread of the TIMER expiry mode: waits for due deadlines in OrderExpiryQueue and cancels those orders
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderExpiryWorker {
+
+    private final OrderExpiryQueue orderExpiryQueue;
+    private final OrderRepository orderRepository;
+    private final OrderService orderService;
+
+    @Value("${order.expiry.mode:timer}")
+    private OrderExpiryMode expiryMode = OrderExpiryMode.TIMER;
+
+    @Value("${order.reaper.chunk-size:500}")
+    private int reaperChunkSize = 500;
+
+    @Value("${order.check-interval-ms}")
+    private long retryDelayMs;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private volatile Thread worker;
+
+    /**
+     * Rebuild the queue from the unpaid orders in the database and start the worker thread
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (expiryMode != OrderExpiryMode.TIMER) {
+            return;
+        }
+        List<Order> unpaidOrders = orderRepository.findByPaid(false);
+        unpaidOrders.forEach(order -> orderExpiryQueue.schedule(order.getId(), order.getCreatedAt()));
+        log.info("Order expiry queue rebuilt with {} unpaid orders", unpaidOrders.size());
+
+        Thread.Builder builder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+        worker = builder.name("order-expiry").start(this::run);
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread current = worker;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Long> dueIds;
+            try {
+                dueIds = orderExpiryQueue.takeDue(reaperChunkSize);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            try {
+                orderService.cancelExpiredOrders(dueIds);
+            } catch (RuntimeException e) {
+                log.error("Cancelling expired orders {} failed, retrying in {} ms: {}", dueIds, retryDelayMs, e.getMessage());
+                orderExpiryQueue.postpone(dueIds, Duration.ofMillis(retryDelayMs));
+            }
+        }
+        log.info("Order expiry worker stopped");
+    }
+}
@@ -0,0 +1,13 @@
+package com.demo.store.service;
+
+import com.demo.store.dto.OrderLineDTO;
+
+import java.util.List;
+
+/**
+ * One page of orders read with keyset pagination
+ * @param lines Order lines of the page in order ID and item order
+ * @param nextAfterId ID to continue after, or null if this is the last page
+ */
+public record OrderPage(List<OrderLineDTO> lines, Long nextAfterId) {
+}
@@ -1,7 +1,11 @@
 package com.demo.store.service;
 
+import com.demo.store.cache.ProductCache;
+import com.demo.store.dto.OrderLineDTO;
+import com.demo.store.dto.ProductQuantityTotalDTO;
 import com.demo.store.exception.InsufficientStockException;
 import com.demo.store.exception.NotFoundException;
+import com.demo.store.metrics.OrderMetrics;
 import com.demo.store.model.Order;
 import com.demo.store.model.OrderExtra;
 import com.demo.store.model.OrderProduct;
@@ -10,20 +14,34 @@ import com.demo.store.repository.OrderExtraRepository;
 import com.demo.store.repository.OrderProductRepository;
 import com.demo.store.repository.OrderRepository;
 import com.demo.store.repository.ProductRepository;
-import com.demo.store.util.RetryUtils;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.OptimisticLockException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -34,32 +52,84 @@ public class OrderService {
     private final OrderExtraRepository orderExtraRepository;
     private final ProductRepository productRepository;
     private final OrderProductRepository orderProductRepository;
+    private final InventoryLedger inventoryLedger;
+    private final ProductCache productCache;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderExpiryQueue orderExpiryQueue;
+    private final OrderMetrics orderMetrics;
+    private final TransactionalRetry transactionalRetry;
+    private final SalesRollupService salesRollupService;
+    private final OrderEventOutbox orderEventOutbox;
 
     @Value("${order.expiration-time-minutes}")
     private int orderExpirationTime;
 
+    @Value("${order.page.default-size:50}")
+    private int defaultPageSize = 50;
+
+    @Value("${order.page.max-size:500}")
+    private int maxPageSize = 500;
+
+    @Value("${order.stock-reservation-mode:optimistic}")
+    private StockReservationMode stockReservationMode = StockReservationMode.OPTIMISTIC;
+
+    @Value("${order.expiry.mode:timer}")
+    private OrderExpiryMode expiryMode = OrderExpiryMode.TIMER;
+
+    @Value("${order.batch.max-size:500}")
+    private int maxBatchSize = 500;
+
+    @Value("${order.reaper.chunk-size:500}")
+    private int reaperChunkSize = 500;
+
+    @Value("${order.reaper.time-budget-ms:5000}")
+    private long reaperTimeBudgetMs = 5000;
 
     /**
-     * Get a list of all orders
-     * @return List of all orders
+     * Get a page of all orders
+     * @param afterId ID after which the page starts, 0 for the first page
+     * @param size Requested page size, null for the default
+     * @return Page of orders
      */
-    public List<OrderExtra> getAllOrders() {
-        log.info("Getting a list of all orders");
-        return orderExtraRepository.findAll();
+    public OrderPage getAllOrders(long afterId, Integer size) {
+        log.info("Getting a page of orders after ID {}", afterId);
+        int pageSize = resolvePageSize(size);
+        return loadPage(orderExtraRepository.findIdsAfter(afterId, PageRequest.of(0, pageSize + 1)), pageSize);
+    }
+
+    /**
+     * Pass every order to a consumer without holding the whole list in memory.
+     * Orders are read through a database cursor and detached once consumed.
+     * @param consumer Consumer called for each order in ID order
+     */
+    @Transactional(readOnly = true)
+    public void exportOrders(Consumer<OrderExtra> consumer) {
+        log.info("Exporting all orders");
+        long exported = 0;
+        try (Stream<OrderExtra> orders = orderExtraRepository.streamAllWithItems()) {
+            for (OrderExtra order : (Iterable<OrderExtra>) orders::iterator) {
+                consumer.accept(order);
+                entityManager.detach(order);
+                exported++;
+            }
+        }
+        log.info("Exported {} orders", exported);
     }
 
     /**
      * Get an order by its ID
      * @param id Order ID
-     * @return Order object
+     * @return Order lines of the order, one per item
      */
-    public OrderExtra getOrderById(Long id) {
+    public List<OrderLineDTO> getOrderById(Long id) {
         log.info("Getting order by ID {}", id);
-        return orderExtraRepository.findById(id)
-                .orElseThrow(() -> {
-                    log.warn("Order with ID {} not found", id);
-                    return new NotFoundException("Order not found");
-                });
+        List<OrderLineDTO> lines = orderExtraRepository.findLinesByIdIn(List.of(id));
+        if (lines.isEmpty()) {
+            log.warn("Order with ID {} not found", id);
+            throw new NotFoundException("Order not found");
+        }
+        return lines;
     }
 
     /**
@@ -75,54 +145,306 @@ public class OrderService {
      *              Product ID will be set to the ID of the product
      * @return OrderExtra object to be returned to the client
      */
-    @Transactional
+    @Timed(value = "store.orders.create", description = "Order creation", histogram = true)
     public OrderExtra createOrder(Order order, List<OrderProduct> items) {
-        return RetryUtils.retry(
-                3,
-                200,
-                ObjectOptimisticLockingFailureException.class,
-                () -> createOrderInternal(order, items),
-                NotFoundException.class, InsufficientStockException.class
-        );
+        return createOrder(order, items, created -> { });
     }
 
-    private OrderExtra createOrderInternal(Order order, List<OrderProduct> items) {
-        log.info("Creating a new order...");
-        order.prePersist();
-        Order savedOrder = orderRepository.save(order);
+    /**
+     * Create a new order and run a callback in the transaction that creates it
+     * @param order Order object for creation, see {@link #createOrder(Order, List)}
+     * @param items List of OrderProduct objects to be added to the order, see {@link #createOrder(Order, List)}
+     * @param onCreated Called with the created order before its transaction commits, e.g. to store the response
+     *                  of an idempotent request; an exception rolls the order back
+     * @return OrderExtra object to be returned to the client
+     */
+    @Timed(value = "store.orders.create", description = "Order creation", histogram = true)
+    public OrderExtra createOrder(Order order, List<OrderProduct> items, Consumer<OrderExtra> onCreated) {
+        // Every attempt runs in a new transaction; conflicts detected on commit are retried as well
+        return transactionalRetry.execute("create-order",
+                () -> createOrderInternal(order, items, onCreated),
+                e -> orderMetrics.conflictRetried());
+    }
 
-        for (OrderProduct item : items) {
-            Product product = productRepository.findById(item.getProduct().getId())
-                    .orElseThrow(() -> {
-                        log.warn("Product with ID {} not found, order cannot be created", item.getProduct().getId());
-                        return new NotFoundException("Product not found");
-                    });
-
-            if (product.getStockQuantity() < item.getQuantity()) {
-                log.warn("Out of stock: {} (available {}, requested {})",
-                        product.getName(), product.getStockQuantity(), item.getQuantity());
-                throw new InsufficientStockException("Insufficient stock: " + product.getName());
-            }
+    private OrderExtra createOrderInternal(Order order, List<OrderProduct> items, Consumer<OrderExtra> onCreated) {
+        log.info("Creating a new order...");
+        // A failed attempt leaves its generated IDs behind, so each attempt saves its own copies
+        Order attempt = new Order(null, order.getCreatedAt(), order.isPaid());
+        attempt.prePersist();
+        List<OrderProduct> attemptItems = copyItems(items);
+        Order savedOrder = orderRepository.save(attempt);
 
-            log.info("Reserving item {} in quantity {}", product.getName(), item.getQuantity());
-            product.setStockQuantity(product.getStockQuantity() - item.getQuantity());
-            productRepository.save(product);
+        Map<Long, Integer> requested = aggregateQuantities(attemptItems);
+        Map<Long, Product> products = switch (stockReservationMode) {
+            case OPTIMISTIC -> reserveStockOptimistically(requested);
+            case ATOMIC -> reserveStockAtomically(requested);
+            case IN_MEMORY -> reserveStockInMemory(requested);
+        };
+        if (stockReservationMode != StockReservationMode.IN_MEMORY) {
+            productCache.evictAfterCommit(requested.keySet());
+        }
 
+        for (OrderProduct item : attemptItems) {
             item.setOrder(savedOrder);
-            item.setProduct(product);
-            orderProductRepository.save(item);
+            item.setProduct(products.get(item.getProduct().getId()));
+            item.setPrice(item.getProduct().getPrice());
         }
+        orderProductRepository.saveAll(attemptItems);
+        orderExpiryQueue.scheduleAfterCommit(savedOrder.getId(), savedOrder.getCreatedAt());
+        salesRollupService.orderCreated(savedOrder.getCreatedAt(), savedOrder.isPaid(), attemptItems);
+        orderEventOutbox.orderCreated(savedOrder.getId(), requested);
 
+        OrderExtra created = new OrderExtra(savedOrder.getId(), savedOrder.getCreatedAt(), savedOrder.isPaid(), attemptItems);
+        onCreated.accept(created);
         log.info("An order was created with ID {}", savedOrder.getId());
-        return new OrderExtra(savedOrder.getId(), savedOrder.getCreatedAt(), savedOrder.isPaid(), items);
+        return created;
+    }
+
+    /**
+     * Create many orders at once.
+     * Stock of all orders is reserved in one pass over the products they contain, and orders and items are
+     * written as JDBC batches. An order that cannot be fulfilled is rejected without affecting the others.
+     * @param newOrders Orders to create with their items
+     * @return Result per order, in request order
+     */
+    @Timed(value = "store.orders.create.batch", description = "Batch order creation", histogram = true)
+    public List<BatchOrderResult> createOrders(List<NewOrder> newOrders) {
+        if (newOrders.size() > maxBatchSize) {
+            throw new IllegalArgumentException("At most " + maxBatchSize + " orders can be created at once");
+        }
+        return transactionalRetry.execute("create-order-batch",
+                () -> createOrdersInternal(newOrders),
+                e -> orderMetrics.conflictRetried());
+    }
+
+    private List<BatchOrderResult> createOrdersInternal(List<NewOrder> newOrders) {
+        log.info("Creating a batch of {} orders...", newOrders.size());
+        List<Map<Long, Integer>> requests = newOrders.stream()
+                .map(newOrder -> aggregateQuantities(newOrder.items()))
+                .toList();
+        Set<Long> productIds = new TreeSet<>();
+        requests.forEach(requested -> productIds.addAll(requested.keySet()));
+
+        // Guarded updates cannot reserve for many orders at once, so the atomic mode locks the rows instead
+        List<Product> loaded = stockReservationMode == StockReservationMode.ATOMIC
+                ? productRepository.lockAllByIdIn(productIds)
+                : productRepository.findAllById(productIds);
+        Map<Long, Product> products = loaded.stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        Map<Long, Integer> available = new HashMap<>();
+        products.values().forEach(product -> available.put(product.getId(), product.getStockQuantity()));
+
+        BatchOrderResult[] results = new BatchOrderResult[newOrders.size()];
+        List<Integer> accepted = new ArrayList<>();
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < newOrders.size(); i++) {
+            String error = reserveForBatch(requests.get(i), products, available);
+            if (error != null) {
+                results[i] = BatchOrderResult.rejected(error);
+                continue;
+            }
+            Order order = new Order(null, newOrders.get(i).order().getCreatedAt(), newOrders.get(i).order().isPaid());
+            order.prePersist();
+            accepted.add(i);
+            orders.add(order);
+        }
+        if (orders.isEmpty()) {
+            return List.of(results);
+        }
+
+        List<Order> savedOrders = orderRepository.saveAll(orders);
+        if (stockReservationMode != StockReservationMode.IN_MEMORY) {
+            List<Product> changed = products.values().stream()
+                    .filter(product -> !available.get(product.getId()).equals(product.getStockQuantity()))
+                    .toList();
+            changed.forEach(product -> product.setStockQuantity(available.get(product.getId())));
+            productRepository.saveAll(changed);
+            productCache.evictAfterCommit(changed.stream().map(Product::getId).toList());
+        }
+
+        List<OrderProduct> allItems = new ArrayList<>();
+        for (int j = 0; j < accepted.size(); j++) {
+            Order savedOrder = savedOrders.get(j);
+            // Copies, like the orders, so that a retried attempt does not reuse IDs of a rolled back one
+            List<OrderProduct> items = copyItems(newOrders.get(accepted.get(j)).items());
+            for (OrderProduct item : items) {
+                item.setOrder(savedOrder);
+                item.setProduct(products.get(item.getProduct().getId()));
+                item.setPrice(item.getProduct().getPrice());
+            }
+            allItems.addAll(items);
+            orderExpiryQueue.scheduleAfterCommit(savedOrder.getId(), savedOrder.getCreatedAt());
+            salesRollupService.orderCreated(savedOrder.getCreatedAt(), savedOrder.isPaid(), items);
+            orderEventOutbox.orderCreated(savedOrder.getId(), requests.get(accepted.get(j)));
+            results[accepted.get(j)] = BatchOrderResult.created(
+                    new OrderExtra(savedOrder.getId(), savedOrder.getCreatedAt(), savedOrder.isPaid(), items));
+        }
+        orderProductRepository.saveAll(allItems);
+
+        log.info("Created {} of {} orders in a batch", savedOrders.size(), newOrders.size());
+        return List.of(results);
+    }
+
+    /**
+     * Reserve stock of one order of a batch against the stock left by the orders before it
+     * @param requested Map of product ID to requested quantity
+     * @param products Products of the whole batch
+     * @param available Stock left per product, updated when the order is accepted
+     * @return Reason of the rejection, null if the stock was reserved
+     */
+    private String reserveForBatch(Map<Long, Integer> requested, Map<Long, Product> products, Map<Long, Integer> available) {
+        for (Long productId : requested.keySet()) {
+            if (!products.containsKey(productId)) {
+                log.warn("Product with ID {} not found, order cannot be created", productId);
+                return "Product not found";
+            }
+        }
+
+        if (stockReservationMode == StockReservationMode.IN_MEMORY) {
+            return inventoryLedger.reserve(requested)
+                    .map(shortProductId -> insufficientStock(products.get(shortProductId),
+                            inventoryLedger.getAvailable(shortProductId), requested.get(shortProductId)).getMessage())
+                    .orElse(null);
+        }
+        for (Map.Entry<Long, Integer> entry : requested.entrySet()) {
+            int left = available.get(entry.getKey());
+            if (left < entry.getValue()) {
+                return insufficientStock(products.get(entry.getKey()), left, entry.getValue()).getMessage();
+            }
+        }
+        requested.forEach((productId, quantity) -> available.merge(productId, -quantity, Integer::sum));
+        return null;
+    }
+
+    /**
+     * Reserve stock on managed entities: load all products at once, check the whole basket, then decrement.
+     * Concurrent changes are detected by @Version when the transaction flushes.
+     * @param requested Map of product ID to requested quantity
+     * @return Map of product ID to reserved Product
+     */
+    private Map<Long, Product> reserveStockOptimistically(Map<Long, Integer> requested) {
+        Map<Long, Product> products = productRepository.findAllById(requested.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        // Check the whole basket before touching any stock
+        for (Map.Entry<Long, Integer> entry : requested.entrySet()) {
+            Product product = products.get(entry.getKey());
+            if (product == null) {
+                log.warn("Product with ID {} not found, order cannot be created", entry.getKey());
+                throw new NotFoundException("Product not found");
+            }
+            if (product.getStockQuantity() < entry.getValue()) {
+                throw insufficientStock(product, product.getStockQuantity(), entry.getValue());
+            }
+        }
+
+        for (Map.Entry<Long, Integer> entry : requested.entrySet()) {
+            Product product = products.get(entry.getKey());
+            log.info("Reserving item {} in quantity {}", product.getName(), entry.getValue());
+            product.setStockQuantity(product.getStockQuantity() - entry.getValue());
+        }
+        productRepository.saveAll(products.values());
+        return products;
+    }
+
+    /**
+     * Reserve stock with one guarded UPDATE per product. The database checks availability and decrements
+     * in a single statement, so contended products never fail with an optimistic lock conflict.
+     * Products are updated in ID order to keep lock acquisition consistent between concurrent orders.
+     * @param requested Map of product ID to requested quantity
+     * @return Map of product ID to Product loaded after the reservation
+     */
+    private Map<Long, Product> reserveStockAtomically(Map<Long, Integer> requested) {
+        for (Map.Entry<Long, Integer> entry : new TreeMap<>(requested).entrySet()) {
+            if (productRepository.decrementStock(entry.getKey(), entry.getValue()) == 0) {
+                Product product = productRepository.findById(entry.getKey())
+                        .orElseThrow(() -> {
+                            log.warn("Product with ID {} not found, order cannot be created", entry.getKey());
+                            return new NotFoundException("Product not found");
+                        });
+                throw insufficientStock(product, product.getStockQuantity(), entry.getValue());
+            }
+            log.info("Reserved product ID {} in quantity {}", entry.getKey(), entry.getValue());
+        }
+
+        return productRepository.findAllById(requested.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+    }
+
+    /**
+     * Reserve stock against the in-memory ledger. Products are only read to validate the basket and build
+     * the response; the stock change reaches the products table through the ledger write-behind.
+     * @param requested Map of product ID to requested quantity
+     * @return Map of product ID to Product as stored in the database
+     */
+    private Map<Long, Product> reserveStockInMemory(Map<Long, Integer> requested) {
+        Map<Long, Product> products = productRepository.findAllById(requested.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        for (Long productId : requested.keySet()) {
+            if (!products.containsKey(productId)) {
+                log.warn("Product with ID {} not found, order cannot be created", productId);
+                throw new NotFoundException("Product not found");
+            }
+        }
+
+        inventoryLedger.reserve(requested).ifPresent(shortProductId -> {
+            throw insufficientStock(products.get(shortProductId),
+                    inventoryLedger.getAvailable(shortProductId), requested.get(shortProductId));
+        });
+        log.info("Reserved {} products in the inventory ledger", requested.size());
+        return products;
+    }
+
+    private InsufficientStockException insufficientStock(Product product, int available, int requested) {
+        log.warn("Out of stock: {} (available {}, requested {})", product.getName(), available, requested);
+        orderMetrics.insufficientStock();
+        return new InsufficientStockException("Insufficient stock: " + product.getName());
+    }
+
+    /**
+     * Copy the requested items of an order for one attempt to save them
+     * @param items Requested items with product ID and quantity
+     * @return New items without ID or order
+     */
+    private static List<OrderProduct> copyItems(List<OrderProduct> items) {
+        List<OrderProduct> copies = new ArrayList<>(items.size());
+        for (OrderProduct item : items) {
+            OrderProduct copy = new OrderProduct();
+            copy.setProduct(item.getProduct());
+            copy.setQuantity(item.getQuantity());
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    /**
+     * Sum up requested quantities per product, so that a product listed twice in a basket is reserved once
+     * @param items List of OrderProduct objects
+     * @return Map of product ID to total requested quantity, in basket order
+     */
+    private Map<Long, Integer> aggregateQuantities(List<OrderProduct> items) {
+        Map<Long, Integer> requested = new LinkedHashMap<>();
+        for (OrderProduct item : items) {
+            requested.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        return requested;
     }
 
     /**
      * Cancel an order by its ID
      * @param id Order ID
      */
-    @Transactional
+    @Timed(value = "store.orders.cancel", description = "Order cancellation", histogram = true)
     public void cancelOrder(Long id) {
+        transactionalRetry.execute("cancel-order",
+                () -> {
+                    cancelOrderInternal(id);
+                    return null;
+                },
+                e -> orderMetrics.conflictRetried());
+    }
+
+    private void cancelOrderInternal(Long id) {
         log.info("Cancel order with ID {}", id);
         OrderExtra order = orderExtraRepository.findById(id)
                 .orElseThrow(() -> {
@@ -130,14 +452,24 @@ public class OrderService {
                     return new NotFoundException("Order not found");
                 });
 
-        for (OrderProduct item : order.getItems()) {
-            Product product = item.getProduct();
-            log.info("Return goods {} in quantity {}", product.getName(), item.getQuantity());
-            product.setStockQuantity(product.getStockQuantity() + item.getQuantity());
-            productRepository.save(product);
+        Map<Long, Integer> quantities = aggregateQuantities(order.getItems());
+        if (stockReservationMode == StockReservationMode.IN_MEMORY) {
+            log.info("Return goods of order ID {} to the inventory ledger", id);
+            inventoryLedger.release(quantities);
+        } else {
+            for (OrderProduct item : order.getItems()) {
+                Product product = item.getProduct();
+                log.info("Return goods {} in quantity {}", product.getName(), item.getQuantity());
+                product.setStockQuantity(product.getStockQuantity() + item.getQuantity());
+                productRepository.save(product);
+            }
+            productCache.evictAfterCommit(quantities.keySet());
         }
 
         orderExtraRepository.deleteById(id);
+        orderExpiryQueue.removeAfterCommit(id);
+        salesRollupService.orderCancelled(order.getCreatedAt(), order.isPaid(), order.getItems());
+        orderEventOutbox.orderCancelled(id, quantities);
         log.info("The order with ID {} has been canceled", id);
     }
 
@@ -147,6 +479,7 @@ public class OrderService {
      * @param id Order ID
      * @return Order object with updated paid status
      */
+    @Timed(value = "store.orders.pay", description = "Order payment", histogram = true)
     @Transactional
     public OrderExtra payOrder(Long id) {
         log.info("Paying for order with ID {}", id);
@@ -163,42 +496,154 @@ public class OrderService {
         order.setPaid(true);
         Order updatingOrder = new Order(order.getId(), order.getCreatedAt(), order.isPaid());
         orderRepository.save(updatingOrder);
+        orderExpiryQueue.removeAfterCommit(id);
+        Map<Long, Integer> quantities = aggregateQuantities(order.getItems());
+        salesRollupService.orderPaid(order.getCreatedAt(), order.getItems());
+        orderEventOutbox.orderPaid(id, quantities);
         log.info("The order with ID {} has been successfully paid", id);
         return order;
     }
 
     /**
-     * Get list of orders by paid status
+     * Get a page of orders by paid status
      * @param paid Paid status
      *             true - paid
      *             false - not paid
-     * @return List of orders selected by paid status
+     * @param afterId ID after which the page starts, 0 for the first page
+     * @param size Requested page size, null for the default
+     * @return Page of orders selected by paid status
      */
-    public List<OrderExtra> getOrdersByPaidStatus(boolean paid) {
-        log.info("Getting a list of orders by paid status: {}", paid);
-        return orderExtraRepository.findByPaid(paid);
+    public OrderPage getOrdersByPaidStatus(boolean paid, long afterId, Integer size) {
+        log.info("Getting a page of orders by paid status {} after ID {}", paid, afterId);
+        int pageSize = resolvePageSize(size);
+        return loadPage(orderExtraRepository.findIdsByPaidAfter(paid, afterId, PageRequest.of(0, pageSize + 1)), pageSize);
     }
 
     /**
-     * Cancel expired orders by a scheduled task
+     * Load orders of one page with their items and products as read-only lines
+     * @param ids Order IDs of the page, with one extra ID if there is a next page
+     * @param pageSize Page size
+     * @return Page of orders
+     */
+    private OrderPage loadPage(List<Long> ids, int pageSize) {
+        boolean hasNext = ids.size() > pageSize;
+        List<Long> pageIds = hasNext ? ids.subList(0, pageSize) : ids;
+        if (pageIds.isEmpty()) {
+            return new OrderPage(List.of(), null);
+        }
+        List<OrderLineDTO> lines = orderExtraRepository.findLinesByIdIn(pageIds);
+        return new OrderPage(lines, hasNext ? pageIds.get(pageIds.size() - 1) : null);
+    }
+
+    private int resolvePageSize(Integer size) {
+        if (size == null) {
+            return defaultPageSize;
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be greater than 0");
+        }
+        return Math.min(size, maxPageSize);
+    }
+
+    /**
+     * Cancel expired orders by a scheduled task when order.expiry.mode is polling.
+     * Orders are reaped in chunks, each in its own transaction, until none are left or the time budget is spent.
      */
     @Scheduled(fixedRateString = "${order.check-interval-ms}")
-    @Transactional
     public void cancelExpiredOrders() {
+        if (expiryMode != OrderExpiryMode.POLLING) {
+            return;
+        }
         LocalDateTime threshold = LocalDateTime.now().minusMinutes(orderExpirationTime);
-        List<OrderExtra> expiredOrders = orderExtraRepository.findByPaidFalseAndCreatedAtBefore(threshold);
+        long startedAt = System.nanoTime();
+        long deadline = startedAt + Duration.ofMillis(reaperTimeBudgetMs).toNanos();
+        int reaped = 0;
+        int candidates = 0;
+        List<Long> expiredIds;
 
-        for (OrderExtra order : expiredOrders) {
-            log.info("Cancel expired order ID {}", order.getId());
-
-            for (OrderProduct item : order.getItems()) {
-                Product product = item.getProduct();
-                log.info("Return goods {} in quantity {} during cancelling of expired order ID {}", product.getName(), item.getQuantity(), order.getId());
-                product.setStockQuantity(product.getStockQuantity() + item.getQuantity());
-                productRepository.save(product);
+        do {
+            expiredIds = orderExtraRepository.findExpiredIds(threshold, PageRequest.of(0, reaperChunkSize));
+            if (expiredIds.isEmpty()) {
+                break;
             }
+            candidates += expiredIds.size();
+            reaped += cancelExpiredChunk(expiredIds);
+        } while (expiredIds.size() == reaperChunkSize && System.nanoTime() < deadline);
 
-            orderExtraRepository.delete(order);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - startedAt);
+        orderMetrics.reaperRun("polling", elapsed, reaped, candidates - reaped);
+        long elapsedMs = elapsed.toMillis();
+        if (expiredIds.size() == reaperChunkSize) {
+            log.warn("Reaped {} expired orders in {} ms, time budget spent, the rest is left for the next run", reaped, elapsedMs);
+        } else if (reaped > 0) {
+            log.info("Reaped {} expired orders in {} ms", reaped, elapsedMs);
+        } else {
+            log.debug("Reaped no expired orders in {} ms", elapsedMs);
         }
     }
+
+    /**
+     * Cancel orders whose deadline is due, in chunks. Orders paid or cancelled in the meantime are skipped.
+     * @param orderIds IDs of expired orders
+     * @return Number of cancelled orders
+     */
+    public int cancelExpiredOrders(List<Long> orderIds) {
+        long startedAt = System.nanoTime();
+        int reaped = 0;
+        for (int from = 0; from < orderIds.size(); from += reaperChunkSize) {
+            reaped += cancelExpiredChunk(orderIds.subList(from, Math.min(from + reaperChunkSize, orderIds.size())));
+        }
+        orderMetrics.reaperRun("timer", Duration.ofNanos(System.nanoTime() - startedAt), reaped, orderIds.size() - reaped);
+        log.info("Reaped {} of {} due orders", reaped, orderIds.size());
+        return reaped;
+    }
+
+    /**
+     * Cancel one chunk of expired orders in its own transaction
+     * @param candidateIds IDs of expired orders
+     * @return Number of cancelled orders
+     */
+    private int cancelExpiredChunk(List<Long> candidateIds) {
+        Integer cancelled = transactionTemplate.execute(status -> cancelExpiredOrdersInTransaction(candidateIds));
+        return cancelled == null ? 0 : cancelled;
+    }
+
+    /**
+     * Return the goods of expired orders with one update per product and delete the orders in bulk
+     * @param candidateIds IDs of expired orders
+     * @return Number of cancelled orders
+     */
+    private int cancelExpiredOrdersInTransaction(List<Long> candidateIds) {
+        // Lock the orders and skip those paid since they were selected
+        List<Long> orderIds = orderRepository.lockUnpaidByIdIn(candidateIds).stream()
+                .map(Order::getId)
+                .toList();
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+
+        // Sorted by product ID so concurrent writers lock rows in the same order
+        List<ProductQuantityTotalDTO> totals = orderProductRepository.sumQuantitiesByOrderIds(orderIds);
+        Map<Long, Integer> released = new TreeMap<>();
+        for (ProductQuantityTotalDTO total : totals) {
+            released.merge(total.productId(), Math.toIntExact(total.quantity()), Integer::sum);
+        }
+
+        if (stockReservationMode == StockReservationMode.IN_MEMORY) {
+            inventoryLedger.release(released);
+        } else {
+            released.forEach((productId, quantity) -> {
+                log.debug("Return goods ID {} in quantity {} during cancelling of expired orders", productId, quantity);
+                productRepository.incrementStock(productId, quantity);
+            });
+            productCache.evictAfterCommit(released.keySet());
+        }
+
+        salesRollupService.ordersExpired(totals);
+        orderEventOutbox.ordersExpired(orderIds);
+        orderProductRepository.deleteByOrderIds(orderIds);
+        orderRepository.deleteByIdIn(orderIds);
+        log.info("Cancelled expired orders IDs {} to {} ({} orders)", orderIds.get(0), orderIds.get(orderIds.size() - 1), orderIds.size());
+        return orderIds.size();
+    }
 }
@@ -0,0 +1,35 @@
+package com.demo.store.service;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Body format of a product import
+ */
+public enum ProductImportFormat {
+    /**
+     * Comma separated values with a header row naming the columns name, price and stockQuantity
+     */
+    CSV,
+    /**
+     * One CreateProductDTO JSON object per line
+     */
+    NDJSON;
+
+    public static final String CSV_VALUE = "text/csv";
+
+    /**
+     * Get the format of a request body
+     * @param contentType Content type of the body
+     * @return Import format
+     * @throws IllegalArgumentException If the content type is not supported
+     */
+    public static ProductImportFormat of(MediaType contentType) {
+        if (MediaType.parseMediaType(CSV_VALUE).includes(contentType)) {
+            return CSV;
+        }
+        if (MediaType.APPLICATION_NDJSON.includes(contentType)) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Unsupported import content type " + contentType);
+    }
+}
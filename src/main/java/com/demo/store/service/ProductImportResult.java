@@ -0,0 +1,22 @@
+package com.demo.store.service;
+
+import java.util.List;
+
+/**
+ * Summary of a product import
+ * @param inserted Number of rows that created a product
+ * @param updated Number of rows that updated a product with the same name
+ * @param duplicates Number of rows replaced by a later row with the same name in the same batch
+ * @param rejected Number of rows that could not be parsed, failed validation or belonged to a batch that failed
+ * @param errors First rejected rows with their reasons
+ */
+public record ProductImportResult(long inserted, long updated, long duplicates, long rejected, List<RowError> errors) {
+
+    /**
+     * Reason why a row was rejected
+     * @param line Line of the body the row starts at
+     * @param message Reason
+     */
+    public record RowError(long line, String message) {
+    }
+}
@@ -0,0 +1,305 @@
+package com.demo.store.service;
+
+import com.demo.store.cache.ProductCache;
+import com.demo.store.dto.CreateProductDTO;
+import com.demo.store.dto.ProductNameDTO;
+import com.demo.store.repository.ProductRepository;
+import com.demo.store.search.ProductSearchIndex;
+import com.demo.store.util.CsvReader;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk product import from a streamed CSV or NDJSON body.
+ * <p>
+ * Rows are parsed and validated one at a time and upserted by name in batches, each batch in its own
+ * transaction with one lookup query and JDBC batches for the updates and inserts. A batch that fails is rejected
+ * as a whole with the lines of its rows, without undoing the batches before it or stopping the ones after it.
+ * Within a batch the last row of a name wins and the rows it replaces are counted as duplicates.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductImportService {
+
+    private static final String UPDATE_PRODUCT =
+            "UPDATE products SET price = ?, stock = ?, version = version + 1 WHERE id = ?";
+    private static final String UPDATE_PRODUCT_PRICE =
+            "UPDATE products SET price = ?, version = version + 1 WHERE id = ?";
+    private static final String INSERT_PRODUCT =
+            "INSERT INTO products (name, price, stock, version) VALUES (?, ?, ?, 0)";
+    private static final List<String> CSV_COLUMNS = List.of("name", "price", "stockQuantity");
+
+    private final ProductRepository productRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final InventoryLedger inventoryLedger;
+    private final ProductCache productCache;
+    private final ProductSearchIndex productSearchIndex;
+
+    @Value("${product.import.batch-size:1000}")
+    private int batchSize = 1000;
+
+    @Value("${product.import.max-errors:100}")
+    private int maxErrors = 100;
+
+    /**
+     * Import products from a body without holding it in memory
+     * @param body Body of the request
+     * @param format Format of the body
+     * @return Summary of the import
+     * @throws IllegalArgumentException If the CSV header is missing a column or a quoted field is not closed
+     */
+    public ProductImportResult importProducts(Reader body, ProductImportFormat format) {
+        log.info("Importing products from {}", format);
+        Import state = new Import();
+        try (BufferedReader reader = new BufferedReader(body)) {
+            switch (format) {
+                case CSV -> readCsv(reader, state);
+                case NDJSON -> readNdjson(reader, state);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        flush(state);
+        log.info("Imported products: {} inserted, {} updated, {} duplicates, {} rejected",
+                state.inserted, state.updated, state.duplicates, state.rejected);
+        return new ProductImportResult(state.inserted, state.updated, state.duplicates, state.rejected,
+                List.copyOf(state.errors));
+    }
+
+    private void readCsv(BufferedReader reader, Import state) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        List<String> header = csv.next();
+        if (header == null) {
+            return;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim(), i);
+        }
+        for (String column : CSV_COLUMNS) {
+            if (!columns.containsKey(column)) {
+                throw new IllegalArgumentException("CSV header must name the columns " + String.join(",", CSV_COLUMNS));
+            }
+        }
+
+        List<String> fields;
+        while ((fields = csv.next()) != null) {
+            if (fields.size() == 1 && fields.get(0).isBlank()) {
+                continue;
+            }
+            CreateProductDTO row = new CreateProductDTO();
+            try {
+                row.setName(field(fields, columns.get("name")));
+                String price = field(fields, columns.get("price"));
+                row.setPrice(price == null ? null : new BigDecimal(price));
+                String stockQuantity = field(fields, columns.get("stockQuantity"));
+                row.setStockQuantity(stockQuantity == null ? null : Integer.valueOf(stockQuantity));
+            } catch (NumberFormatException e) {
+                reject(state, csv.recordLine(), "Invalid number: " + e.getMessage());
+                continue;
+            }
+            add(state, csv.recordLine(), row);
+        }
+    }
+
+    private void readNdjson(BufferedReader reader, Import state) throws IOException {
+        String line;
+        long lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            CreateProductDTO row;
+            try {
+                row = objectMapper.readValue(line, CreateProductDTO.class);
+            } catch (JsonProcessingException e) {
+                reject(state, lineNumber, "Invalid JSON: " + e.getOriginalMessage());
+                continue;
+            }
+            add(state, lineNumber, row);
+        }
+    }
+
+    private static String field(List<String> fields, int index) {
+        if (index >= fields.size() || fields.get(index).isBlank()) {
+            return null;
+        }
+        return fields.get(index).trim();
+    }
+
+    /**
+     * Validate a row like a single product creation and queue it for the next batch
+     */
+    private void add(Import state, long line, CreateProductDTO row) {
+        Set<ConstraintViolation<CreateProductDTO>> violations = validator.validate(row);
+        if (!violations.isEmpty()) {
+            reject(state, line, violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+            return;
+        }
+        if (state.batch.put(row.getName(), new QueuedRow(line, row)) != null) {
+            // An earlier row of the same batch is replaced by this one
+            state.duplicates++;
+        }
+        if (state.batch.size() >= batchSize) {
+            flush(state);
+        }
+    }
+
+    private void reject(Import state, long line, String message) {
+        state.rejected++;
+        if (state.errors.size() < maxErrors) {
+            state.errors.add(new ProductImportResult.RowError(line, message));
+        }
+    }
+
+    /**
+     * Upsert the queued rows in one transaction, or reject all of them if the transaction fails
+     */
+    private void flush(Import state) {
+        if (state.batch.isEmpty()) {
+            return;
+        }
+        List<QueuedRow> rows = new ArrayList<>(state.batch.values());
+        state.batch.clear();
+        int[] counts;
+        try {
+            counts = transactionTemplate.execute(status -> upsert(rows.stream().map(QueuedRow::row).toList()));
+        } catch (RuntimeException e) {
+            log.warn("Import batch of {} rows from line {} failed: {}", rows.size(), rows.get(0).line(), e.getMessage());
+            // The database error stays in the log, the client only learns which rows were not saved
+            rows.forEach(row -> reject(state, row.line(), "Batch of this row could not be saved"));
+            return;
+        }
+        state.inserted += counts[0];
+        state.updated += counts[1];
+    }
+
+    /**
+     * Update the products whose name exists and insert the others
+     * @param rows Rows with distinct names
+     * @return Number of inserted and updated rows
+     */
+    private int[] upsert(List<CreateProductDTO> rows) {
+        Map<String, List<Long>> existing = productRepository.findAllNamesByNameIn(
+                        rows.stream().map(CreateProductDTO::getName).toList())
+                .stream()
+                .collect(Collectors.groupingBy(ProductNameDTO::name,
+                        Collectors.mapping(ProductNameDTO::id, Collectors.toList())));
+
+        List<Object[]> updates = new ArrayList<>();
+        List<Long> updatedIds = new ArrayList<>();
+        List<CreateProductDTO> inserts = new ArrayList<>();
+        int updatedRows = 0;
+        for (CreateProductDTO row : rows) {
+            List<Long> ids = existing.get(row.getName());
+            if (ids == null) {
+                inserts.add(row);
+                continue;
+            }
+            updatedRows++;
+            for (Long id : ids) {
+                updatedIds.add(id);
+                if (inventoryLedger.isEnabled()) {
+                    // Stock is owned by the ledger and reaches the products table through its write-behind
+                    updates.add(new Object[]{row.getPrice(), id});
+                    inventoryLedger.adjustTo(id, row.getStockQuantity());
+                } else {
+                    updates.add(new Object[]{row.getPrice(), row.getStockQuantity(), id});
+                }
+            }
+        }
+
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(inventoryLedger.isEnabled() ? UPDATE_PRODUCT_PRICE : UPDATE_PRODUCT, updates);
+            productCache.evictAfterCommit(updatedIds);
+        }
+        if (!inserts.isEmpty()) {
+            List<Long> insertedIds = insert(inserts);
+            for (int i = 0; i < inserts.size(); i++) {
+                productSearchIndex.putAfterCommit(insertedIds.get(i), inserts.get(i).getName());
+            }
+            productCache.evictCatalogAfterCommit();
+        }
+        return new int[]{inserts.size(), updatedRows};
+    }
+
+    /**
+     * Insert products in one JDBC batch
+     * @param rows Rows to insert
+     * @return Generated IDs in row order
+     */
+    private List<Long> insert(List<CreateProductDTO> rows) {
+        GeneratedKeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_PRODUCT, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        CreateProductDTO row = rows.get(i);
+                        statement.setString(1, row.getName());
+                        statement.setBigDecimal(2, row.getPrice());
+                        statement.setInt(3, row.getStockQuantity());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rows.size();
+                    }
+                }, keys);
+        return keys.getKeyList().stream()
+                .map(key -> ((Number) key.values().iterator().next()).longValue())
+                .toList();
+    }
+
+    /**
+     * Progress of one import
+     */
+    private static class Import {
+        private final Map<String, QueuedRow> batch = new LinkedHashMap<>();
+        private final List<ProductImportResult.RowError> errors = new ArrayList<>();
+        private long inserted;
+        private long updated;
+        private long duplicates;
+        private long rejected;
+    }
+
+    /**
+     * Valid row waiting for its batch
+     * @param line Line of the body the row starts at
+     * @param row Parsed row
+     */
+    private record QueuedRow(long line, CreateProductDTO row) {
+    }
+}
@@ -1,11 +1,18 @@
 package com.demo.store.service;
 
+import com.demo.store.cache.ProductCache;
+import com.demo.store.cache.ProductCatalog;
+import com.demo.store.dto.ProductCatalogVersionDTO;
+import com.demo.store.dto.ProductNameDTO;
 import com.demo.store.exception.NotFoundException;
 import com.demo.store.model.Product;
 import com.demo.store.repository.OrderProductRepository;
 import com.demo.store.repository.ProductRepository;
+import com.demo.store.search.ProductSearchIndex;
+import com.demo.store.util.ETagUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -19,30 +26,70 @@ public class ProductService {
 
     private final ProductRepository productRepository;
     private final OrderProductRepository orderProductRepository;
+    private final InventoryLedger inventoryLedger;
+    private final ProductCache productCache;
+    private final ProductSearchIndex productSearchIndex;
+
+    @Value("${product.search.max-limit:50}")
+    private int maxSearchLimit = 50;
 
     /**
      * Get a list of all products
      * @return List of all products
      */
     public List<Product> getAllProducts() {
+        return getCatalog().products();
+    }
+
+    /**
+     * Get all products with the ETag of the catalog
+     * @return Catalog of all products
+     */
+    public ProductCatalog getCatalog() {
         log.info("Getting a list of all products");
-        return productRepository.findAll();
+        return productCache.getCatalog(productRepository::findAll);
     }
 
     /**
-     * Get a product by its ID
+     * Get the ETag of the catalog without loading product rows
+     * @return Quoted ETag of the catalog
+     */
+    public String getCatalogETag() {
+        return productCache.getCatalogETag(() -> {
+            ProductCatalogVersionDTO version = productRepository.findCatalogVersion();
+            return ETagUtils.catalogETag(version.count(), version.versionSum(), version.maxId());
+        });
+    }
+
+    /**
+     * Get a product by its ID.
+     * Concurrent reads of the same product share one database load through the product cache.
      * @param id Product ID
      * @return Product object
      */
     public Product getProductById(Long id) {
         log.info("Getting a product by ID {}", id);
-        return productRepository.findById(id)
+        return productCache.getProduct(id, productRepository::findById)
                 .orElseThrow(() -> {
                     log.warn("Product by ID {} not found", id);
                     return new NotFoundException("Product not found");
                 });
     }
 
+    /**
+     * Search products by name, ignoring case and diacritics
+     * @param query Search query, matched as a word prefix below three characters and as a substring otherwise
+     * @param limit Max number of results
+     * @return Matching products, best matches first
+     */
+    public List<ProductNameDTO> searchProducts(String query, int limit) {
+        if (limit < 1 || limit > maxSearchLimit) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + maxSearchLimit);
+        }
+        log.debug("Searching products by '{}'", query);
+        return productSearchIndex.search(query, limit);
+    }
+
     /**
      * Create a new product
      * @param product Product object
@@ -54,7 +101,10 @@ public class ProductService {
             throw new IllegalArgumentException("Invalid product data");
         }
         log.info("Creation of a new product: {}", product.getName());
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        productCache.evictCatalogAfterCommit();
+        productSearchIndex.putAfterCommit(savedProduct.getId(), savedProduct.getName());
+        return savedProduct;
     }
 
     /**
@@ -66,24 +116,33 @@ public class ProductService {
     @Transactional
     public Product updateProduct(Long id, Product updatedProduct) {
         log.info("Updating of product by ID {}", id);
-        return productRepository.findById(id)
-                .map(product -> {
-                    log.info("Product found, updating...");
-                    if (updatedProduct.getName() != null && !updatedProduct.getName().isEmpty()) {
-                        product.setName(updatedProduct.getName());
-                    }
-                    if (updatedProduct.getPrice() != null && updatedProduct.getPrice().compareTo(BigDecimal.ZERO) >= 0) {
-                        product.setPrice(updatedProduct.getPrice());
-                    }
-                    if (updatedProduct.getStockQuantity() != null && updatedProduct.getStockQuantity() >= 0) {
-                        product.setStockQuantity(updatedProduct.getStockQuantity());
-                    }
-                    return productRepository.save(product);
-                })
+        Product product = productRepository.findById(id)
                 .orElseThrow(() -> {
                     log.warn("Product with ID {} not found, update failed", id);
                     return new NotFoundException("Product not found");
                 });
+
+        log.info("Product found, updating...");
+        if (updatedProduct.getName() != null && !updatedProduct.getName().isEmpty()) {
+            product.setName(updatedProduct.getName());
+        }
+        if (updatedProduct.getPrice() != null && updatedProduct.getPrice().compareTo(BigDecimal.ZERO) >= 0) {
+            product.setPrice(updatedProduct.getPrice());
+        }
+        boolean overwriteStock = updatedProduct.getStockQuantity() != null && updatedProduct.getStockQuantity() >= 0;
+        if (overwriteStock && !inventoryLedger.isEnabled()) {
+            product.setStockQuantity(updatedProduct.getStockQuantity());
+        }
+        Product savedProduct = productRepository.save(product);
+        productCache.evictAfterCommit(List.of(id));
+        productSearchIndex.putAfterCommit(id, savedProduct.getName());
+
+        if (overwriteStock && inventoryLedger.isEnabled()) {
+            // Stock is owned by the ledger: the new value reaches the products table through its write-behind
+            inventoryLedger.adjustTo(id, updatedProduct.getStockQuantity());
+            return withStockQuantity(savedProduct, updatedProduct.getStockQuantity());
+        }
+        return savedProduct;
     }
 
     /**
@@ -99,9 +158,28 @@ public class ProductService {
         if (productRepository.existsById(id)) {
             log.info("Deleting product by ID {}", id);
             productRepository.deleteById(id);
+            inventoryLedger.remove(id);
+            productCache.evictAfterCommit(List.of(id));
+            productSearchIndex.removeAfterCommit(id);
         } else {
             log.warn("Attempting to delete a non-existent product with ID {}", id);
             throw new NotFoundException("Product not found");
         }
     }
+
+    /**
+     * Copy a product with another stock quantity, leaving the managed entity untouched
+     * @param product Product object
+     * @param stockQuantity Stock quantity of the copy
+     * @return Detached copy of the product
+     */
+    private Product withStockQuantity(Product product, Integer stockQuantity) {
+        Product copy = new Product();
+        copy.setId(product.getId());
+        copy.setName(product.getName());
+        copy.setPrice(product.getPrice());
+        copy.setStockQuantity(stockQuantity);
+        copy.setVersion(product.getVersion());
+        return copy;
+    }
 }
@@ -0,0 +1,261 @@
+package com.demo.store.service;
+
+import com.demo.store.dto.ProductQuantityTotalDTO;
+import com.demo.store.dto.SalesRollupLineDTO;
+import com.demo.store.model.OrderProduct;
+import com.demo.store.model.RollupBucket;
+import com.demo.store.model.SalesRollupId;
+import com.demo.store.repository.SalesRollupRepository;
+import com.demo.store.util.TransactionUtils;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Incremental sales rollups: units and revenue per product per minute, hour and day bucket of the order creation time.
+ * <p>
+ * Order lifecycle changes are collected as net deltas per rollup row once their transaction commits and are
+ * merged into the sales_rollups table in batches by a write-behind flusher, so order writes never wait for
+ * a rollup row. Dashboard reads then cost one row per bucket and product instead of one per order item.
+ * Revenue is summed from the sale price kept on every order item, so a price change does not alter past buckets.
+ * Deltas not yet flushed are lost on a crash; {@link #rebuild()} recomputes everything from the order tables.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SalesRollupService {
+
+    private static final String MERGE_DELTA = """
+            MERGE INTO sales_rollups r
+            USING (VALUES (CAST(? AS VARCHAR(8)), CAST(? AS TIMESTAMP), CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS BIGINT),
+                           CAST(? AS NUMERIC(38, 2)), CAST(? AS NUMERIC(38, 2))))
+                AS d(bucket_type, bucket_start, product_id, units, paid_units, revenue, paid_revenue)
+            ON r.bucket_type = d.bucket_type AND r.bucket_start = d.bucket_start AND r.product_id = d.product_id
+            WHEN MATCHED THEN UPDATE SET units = r.units + d.units, paid_units = r.paid_units + d.paid_units,
+                revenue = r.revenue + d.revenue, paid_revenue = r.paid_revenue + d.paid_revenue
+            WHEN NOT MATCHED THEN INSERT (bucket_type, bucket_start, product_id, units, paid_units, revenue, paid_revenue)
+                VALUES (d.bucket_type, d.bucket_start, d.product_id, d.units, d.paid_units, d.revenue, d.paid_revenue)
+            """;
+
+    private static final String REBUILD_BUCKET = """
+            INSERT INTO sales_rollups (bucket_type, bucket_start, product_id, units, paid_units, revenue, paid_revenue)
+            SELECT '%1$s', DATE_TRUNC('%1$s', o.created_at), i.product_id,
+                   SUM(i.quantity), SUM(CASE WHEN o.paid THEN i.quantity ELSE 0 END),
+                   SUM(i.quantity * i.price), SUM(CASE WHEN o.paid THEN i.quantity * i.price ELSE 0 END)
+            FROM order_items i JOIN orders o ON o.id = i.order_id
+            GROUP BY DATE_TRUNC('%1$s', o.created_at), i.product_id
+            """;
+
+    private final SalesRollupRepository salesRollupRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<SalesRollupId, Delta> pending = new ConcurrentHashMap<>();
+    // Serializes flushes and rebuilds without pinning a virtual thread
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    @Value("${order.analytics.rebuild-on-startup:true}")
+    private boolean rebuildOnStartup = true;
+
+    @Value("${order.analytics.max-buckets:10000}")
+    private long maxBuckets = 10000;
+
+    /**
+     * Count a created order once the current transaction commits
+     * @param createdAt Order creation time
+     * @param paid true if the order was created as paid
+     * @param items Items of the order with their sale price
+     */
+    public void orderCreated(LocalDateTime createdAt, boolean paid, List<OrderProduct> items) {
+        addAfterCommit(createdAt, items, 1, paid ? 1 : 0);
+    }
+
+    /**
+     * Count the payment of an order once the current transaction commits
+     * @param createdAt Order creation time
+     * @param items Items of the order with their sale price
+     */
+    public void orderPaid(LocalDateTime createdAt, List<OrderProduct> items) {
+        addAfterCommit(createdAt, items, 0, 1);
+    }
+
+    /**
+     * Take back a cancelled order once the current transaction commits
+     * @param createdAt Order creation time
+     * @param paid true if the order was paid
+     * @param items Items of the order with their sale price
+     */
+    public void orderCancelled(LocalDateTime createdAt, boolean paid, List<OrderProduct> items) {
+        addAfterCommit(createdAt, items, -1, paid ? -1 : 0);
+    }
+
+    /**
+     * Take back expired unpaid orders once the current transaction commits
+     * @param totals Quantities and revenue per product and order creation time
+     */
+    public void ordersExpired(List<ProductQuantityTotalDTO> totals) {
+        Map<SalesRollupId, Delta> deltas = new HashMap<>();
+        for (ProductQuantityTotalDTO total : totals) {
+            collect(deltas, total.createdAt(), total.productId(), new Delta(-total.quantity(), 0, total.revenue().negate(), BigDecimal.ZERO));
+        }
+        TransactionUtils.afterCommit(() -> deltas.forEach(this::addPending));
+    }
+
+    /**
+     * Get the sales of a time range
+     * @param bucket Bucket size
+     * @param from Start of the range, inclusive; rounded down to the bucket start
+     * @param to End of the range, exclusive
+     * @param productId Product ID, null for all products
+     * @return Rollups in bucket and product order, without empty buckets
+     */
+    public List<SalesRollupLineDTO> getSales(RollupBucket bucket, LocalDateTime from, LocalDateTime to, Long productId) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("The start of the range must be before its end");
+        }
+        long buckets = bucket.count(from, to);
+        if (buckets > maxBuckets) {
+            throw new IllegalArgumentException("The range spans " + buckets + " buckets, at most " + maxBuckets + " are allowed");
+        }
+        log.info("Getting {} sales from {} to {}", bucket, from, to);
+        return salesRollupRepository.findLines(bucket, bucket.truncate(from), to, productId);
+    }
+
+    /**
+     * Recompute all rollups from the orders and order_items tables.
+     * Pending deltas are dropped, since every committed change they hold is part of the recomputed state.
+     * An order committed while the rebuild runs may be counted twice or not at all, so rebuild when order
+     * traffic is quiet, e.g. on startup or after a crash.
+     * @return Number of rollup rows written
+     */
+    public int rebuild() {
+        writeLock.lock();
+        try {
+            Map<SalesRollupId, Delta> dropped = drainPending();
+            try {
+                Integer rows = transactionTemplate.execute(status -> {
+                    jdbcTemplate.update("DELETE FROM sales_rollups");
+                    int inserted = 0;
+                    for (RollupBucket bucket : RollupBucket.values()) {
+                        inserted += jdbcTemplate.update(REBUILD_BUCKET.formatted(bucket.name()));
+                    }
+                    return inserted;
+                });
+                log.info("Sales rollups rebuilt with {} rows", rows);
+                return rows == null ? 0 : rows;
+            } catch (RuntimeException e) {
+                dropped.forEach(this::addPending);
+                throw e;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Rebuild the rollups before the expiry worker starts and before the readiness state switches to accepting traffic.
+     * The web server already listens at this point, so only clients that wait for /actuator/health/readiness
+     * are guaranteed to see the rebuilt rollups.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void rebuildOnStartup() {
+        if (rebuildOnStartup) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Merge the accumulated deltas into the sales_rollups table in one JDBC batch
+     */
+    @Scheduled(fixedDelayString = "${order.analytics.flush-interval-ms:1000}")
+    @PreDestroy
+    public void flush() {
+        writeLock.lock();
+        try {
+            Map<SalesRollupId, Delta> drained = drainPending();
+            if (drained.isEmpty()) {
+                return;
+            }
+            List<Object[]> batch = new ArrayList<>(drained.size());
+            drained.forEach((id, delta) -> batch.add(new Object[]{
+                    id.getBucketType().name(), id.getBucketStart(), id.getProductId(),
+                    delta.units(), delta.paidUnits(), delta.revenue(), delta.paidRevenue()}));
+            try {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(MERGE_DELTA, batch));
+                log.debug("Sales rollups flushed {} rows", batch.size());
+            } catch (RuntimeException e) {
+                log.error("Sales rollups flush failed, {} deltas will be retried: {}", batch.size(), e.getMessage());
+                drained.forEach(this::addPending);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void addAfterCommit(LocalDateTime createdAt, List<OrderProduct> items, int unitsSign, int paidSign) {
+        Map<SalesRollupId, Delta> deltas = new HashMap<>();
+        for (OrderProduct item : items) {
+            BigDecimal revenue = item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity()));
+            collect(deltas, createdAt, item.getProduct().getId(), new Delta(
+                    (long) unitsSign * item.getQuantity(), (long) paidSign * item.getQuantity(),
+                    revenue.multiply(BigDecimal.valueOf(unitsSign)), revenue.multiply(BigDecimal.valueOf(paidSign))));
+        }
+        TransactionUtils.afterCommit(() -> deltas.forEach(this::addPending));
+    }
+
+    private static void collect(Map<SalesRollupId, Delta> deltas, LocalDateTime createdAt, Long productId, Delta delta) {
+        for (RollupBucket bucket : RollupBucket.values()) {
+            deltas.merge(new SalesRollupId(bucket, bucket.truncate(createdAt), productId), delta, Delta::plus);
+        }
+    }
+
+    private void addPending(SalesRollupId id, Delta delta) {
+        pending.merge(id, delta, Delta::plus);
+    }
+
+    /**
+     * Take all pending deltas out of the map.
+     * Each entry is removed atomically, so a delta added concurrently lands in a new entry and is never lost.
+     * @return Non-zero deltas per rollup row
+     */
+    private Map<SalesRollupId, Delta> drainPending() {
+        Map<SalesRollupId, Delta> drained = new HashMap<>();
+        for (SalesRollupId id : pending.keySet()) {
+            Delta delta = pending.remove(id);
+            if (delta != null && !delta.isZero()) {
+                drained.put(id, delta);
+            }
+        }
+        return drained;
+    }
+
+    private record Delta(long units, long paidUnits, BigDecimal revenue, BigDecimal paidRevenue) {
+        Delta plus(Delta other) {
+            return new Delta(units + other.units, paidUnits + other.paidUnits,
+                    revenue.add(other.revenue), paidRevenue.add(other.paidRevenue));
+        }
+
+        boolean isZero() {
+            return units == 0 && paidUnits == 0 && revenue.signum() == 0 && paidRevenue.signum() == 0;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.demo.store.service;
+
+/**
+ * Requested change of the stock of a product: either a delta or an absolute value
+ * @param productId Product ID
+ * @param delta Change of the stock quantity, null for an absolute adjustment
+ * @param absolute New stock quantity, null for a delta adjustment
+ */
+public record StockAdjustment(Long productId, Integer delta, Integer absolute) {
+
+    public boolean isValid() {
+        return (delta == null) != (absolute == null);
+    }
+}
@@ -0,0 +1,30 @@
+package com.demo.store.service;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk stock adjustment
+ * @param applied Number of applied adjustments
+ * @param conflicts Adjustments that were not applied, in request order
+ * @param failed Adjustments that were not attempted or were rolled back because a chunk failed, null if none
+ */
+public record StockAdjustmentResult(int applied, List<Conflict> conflicts, Failure failed) {
+
+    /**
+     * Reason why an adjustment was not applied
+     * @param index Position of the adjustment in the request
+     * @param productId Product ID
+     * @param reason Reason
+     */
+    public record Conflict(int index, Long productId, String reason) {
+    }
+
+    /**
+     * Range of adjustments that did not take effect, safe to retry as a whole
+     * @param from Position of the first adjustment, inclusive
+     * @param to Position of the last adjustment, exclusive
+     * @param reason Reason
+     */
+    public record Failure(int from, int to, String reason) {
+    }
+}
@@ -0,0 +1,171 @@
+package com.demo.store.service;
+
+import com.demo.store.cache.ProductCache;
+import com.demo.store.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bulk stock corrections, e.g. from a warehouse sync.
+ * <p>
+ * Adjustments are applied in chunks, each chunk in its own transaction: one query to find the existing products,
+ * then one JDBC batch of guarded updates that never let stock drop below zero. Adjustments of the same product
+ * are applied in request order. Cached stock is evicted once per chunk. A chunk that fails is rolled back and
+ * ends the request: the chunks before it stay applied and are reported as usual, and the failed chunk and all
+ * after it are reported as one failed range, so a client can retry exactly that range without applying a delta twice.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockAdjustmentService {
+
+    // stock = factor * stock + addend: factor 1 for a delta, 0 for an absolute value
+    private static final String ADJUST_STOCK =
+            "UPDATE products SET stock = ? * stock + ?, version = version + 1 WHERE id = ? AND ? * stock + ? >= 0";
+
+    private final ProductRepository productRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final InventoryLedger inventoryLedger;
+    private final ProductCache productCache;
+
+    @Value("${product.stock-adjustment.chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    @Value("${product.stock-adjustment.max-size:10000}")
+    private int maxSize = 10000;
+
+    /**
+     * Apply stock adjustments, reporting the ones that cannot be applied instead of failing the whole request
+     * @param adjustments Adjustments in the order they should be applied
+     * @return Number of applied adjustments, the conflicts in request order and the range a failed chunk left out
+     * @throws IllegalArgumentException If there are more adjustments than product.stock-adjustment.max-size
+     */
+    public StockAdjustmentResult adjustStock(List<StockAdjustment> adjustments) {
+        if (adjustments.size() > maxSize) {
+            throw new IllegalArgumentException("At most " + maxSize + " stock adjustments can be applied at once");
+        }
+        log.info("Applying {} stock adjustments...", adjustments.size());
+        List<StockAdjustmentResult.Conflict> conflicts = new ArrayList<>();
+        StockAdjustmentResult.Failure failed = null;
+        int applied = 0;
+        for (int from = 0; from < adjustments.size(); from += chunkSize) {
+            int offset = from;
+            List<StockAdjustment> chunk = adjustments.subList(from, Math.min(from + chunkSize, adjustments.size()));
+            // Conflicts of a chunk only count once it commits
+            List<StockAdjustmentResult.Conflict> chunkConflicts = new ArrayList<>();
+            try {
+                applied += transactionTemplate.execute(status -> adjustChunk(chunk, offset, chunkConflicts));
+            } catch (RuntimeException e) {
+                // Later chunks are not attempted, so a retry of the failed range keeps the request order
+                log.error("Stock adjustments from {} on not applied, chunk failed: {}", from, e.getMessage());
+                failed = new StockAdjustmentResult.Failure(from, adjustments.size(),
+                        "Chunk starting at " + from + " failed and was rolled back, later adjustments were not attempted");
+                break;
+            }
+            conflicts.addAll(chunkConflicts);
+        }
+        conflicts.sort(Comparator.comparingInt(StockAdjustmentResult.Conflict::index));
+        log.info("Stock adjustments applied: {}, conflicts: {}", applied, conflicts.size());
+        return new StockAdjustmentResult(applied, conflicts, failed);
+    }
+
+    /**
+     * Apply one chunk of adjustments in the current transaction
+     * @param chunk Adjustments
+     * @param offset Position of the first adjustment in the request
+     * @param conflicts Conflicts of the request, appended to
+     * @return Number of applied adjustments
+     */
+    private int adjustChunk(List<StockAdjustment> chunk, int offset, List<StockAdjustmentResult.Conflict> conflicts) {
+        Set<Long> requestedIds = new HashSet<>();
+        chunk.forEach(adjustment -> requestedIds.add(adjustment.productId()));
+        Set<Long> existingIds = new HashSet<>(productRepository.findIdsByIdIn(requestedIds));
+
+        List<Integer> positions = new ArrayList<>();
+        List<StockAdjustment> valid = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            StockAdjustment adjustment = chunk.get(i);
+            if (!adjustment.isValid()) {
+                conflicts.add(new StockAdjustmentResult.Conflict(offset + i, adjustment.productId(),
+                        "Exactly one of delta and absolute is required"));
+            } else if (!existingIds.contains(adjustment.productId())) {
+                conflicts.add(new StockAdjustmentResult.Conflict(offset + i, adjustment.productId(), "Product not found"));
+            } else {
+                positions.add(offset + i);
+                valid.add(adjustment);
+            }
+        }
+        if (valid.isEmpty()) {
+            return 0;
+        }
+
+        boolean[] done = inventoryLedger.isEnabled() ? adjustLedger(valid) : adjustTable(valid);
+        Set<Long> changedIds = new LinkedHashSet<>();
+        int applied = 0;
+        for (int i = 0; i < valid.size(); i++) {
+            if (done[i]) {
+                applied++;
+                changedIds.add(valid.get(i).productId());
+            } else {
+                conflicts.add(new StockAdjustmentResult.Conflict(positions.get(i), valid.get(i).productId(), "Insufficient stock"));
+            }
+        }
+        // The ledger evicts on its own flush; the table is changed here, so its cached stock goes now, once per chunk
+        if (!inventoryLedger.isEnabled() && !changedIds.isEmpty()) {
+            productCache.evictAfterCommit(changedIds);
+        }
+        return applied;
+    }
+
+    /**
+     * Apply adjustments to the products table in one JDBC batch
+     * @param adjustments Valid adjustments of existing products
+     * @return Whether each adjustment was applied
+     */
+    private boolean[] adjustTable(List<StockAdjustment> adjustments) {
+        List<Object[]> batch = new ArrayList<>(adjustments.size());
+        for (StockAdjustment adjustment : adjustments) {
+            int factor = adjustment.delta() != null ? 1 : 0;
+            int addend = adjustment.delta() != null ? adjustment.delta() : adjustment.absolute();
+            batch.add(new Object[]{factor, addend, adjustment.productId(), factor, addend});
+        }
+        int[] counts = jdbcTemplate.batchUpdate(ADJUST_STOCK, batch);
+        boolean[] done = new boolean[adjustments.size()];
+        for (int i = 0; i < counts.length; i++) {
+            done[i] = counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO;
+        }
+        return done;
+    }
+
+    /**
+     * Apply adjustments to the inventory ledger, which owns stock in the in-memory reservation mode
+     * @param adjustments Valid adjustments of existing products
+     * @return Whether each adjustment was applied
+     */
+    private boolean[] adjustLedger(List<StockAdjustment> adjustments) {
+        boolean[] done = new boolean[adjustments.size()];
+        for (int i = 0; i < adjustments.size(); i++) {
+            StockAdjustment adjustment = adjustments.get(i);
+            if (adjustment.delta() != null) {
+                done[i] = inventoryLedger.adjust(adjustment.productId(), adjustment.delta());
+            } else {
+                inventoryLedger.adjustTo(adjustment.productId(), adjustment.absolute());
+                done[i] = true;
+            }
+        }
+        return done;
+    }
+}
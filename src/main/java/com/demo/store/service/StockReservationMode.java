@@ -0,0 +1,19 @@
+package com.demo.store.service;
+
+/**
+ * Strategy used by OrderService to reserve product stock
+ */
+public enum StockReservationMode {
+    /**
+     * Load products, check and decrement in memory, rely on @Version and retry on conflicts
+     */
+    OPTIMISTIC,
+    /**
+     * One guarded UPDATE per product (stock = stock - n WHERE stock >= n), no retries needed
+     */
+    ATOMIC,
+    /**
+     * Reserve against per-product counters held by InventoryLedger and persist net changes in the background
+     */
+    IN_MEMORY
+}
@@ -0,0 +1,105 @@
+package com.demo.store.service;
+
+import com.demo.store.util.RetryUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs an operation in a new transaction per attempt and retries it on lock conflicts.
+ * <p>
+ * Each attempt gets a fresh persistence context and its own connection, which is returned to the pool
+ * before waiting. Attempts are spaced by exponential backoff with full jitter, so clients that conflicted
+ * with each other do not retry in lockstep. Limits are read per operation from order.retry.{operation}.*
+ * and fall back to order.retry.*.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TransactionalRetry {
+
+    private static final String PREFIX = "order.retry.";
+
+    private final TransactionTemplate transactionTemplate;
+    private final Environment environment;
+
+    private final Map<String, Policy> policies = new ConcurrentHashMap<>();
+
+    /**
+     * Run an operation in its own transaction, retrying on lock conflicts
+     * @param operation Operation name, used to look up its retry limits
+     * @param action Action to run inside the transaction
+     * @return Result of the action
+     */
+    public <T> T execute(String operation, Supplier<T> action) {
+        return execute(operation, action, e -> { });
+    }
+
+    /**
+     * Run an operation in its own transaction, retrying on lock conflicts
+     * @param operation Operation name, used to look up its retry limits
+     * @param action Action to run inside the transaction
+     * @param onRetry Called with the exception of each attempt that is going to be retried
+     * @return Result of the action
+     */
+    public <T> T execute(String operation, Supplier<T> action, Consumer<Throwable> onRetry) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Operation " + operation + " must not be retried inside a running transaction");
+        }
+        Policy policy = policies.computeIfAbsent(operation, this::resolvePolicy);
+        long deadline = System.nanoTime() + policy.timeBudget().toNanos();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (OptimisticLockingFailureException | PessimisticLockingFailureException e) {
+                long backoffMillis = RetryUtils.fullJitterBackoff(attempt, policy.baseBackoff().toMillis(), policy.maxBackoff().toMillis());
+                if (attempt >= policy.maxAttempts()
+                        || System.nanoTime() + Duration.ofMillis(backoffMillis).toNanos() > deadline) {
+                    log.warn("Operation {} gave up after {} attempts: {}", operation, attempt, e.getMessage());
+                    throw e;
+                }
+                log.debug("Operation {} conflicted on attempt {}, retrying in {} ms", operation, attempt, backoffMillis);
+                onRetry.accept(e);
+                sleep(backoffMillis);
+            }
+        }
+    }
+
+    private Policy resolvePolicy(String operation) {
+        return new Policy(
+                property(operation, "max-attempts", 3),
+                Duration.ofMillis(property(operation, "base-backoff-ms", 20)),
+                Duration.ofMillis(property(operation, "max-backoff-ms", 500)),
+                Duration.ofMillis(property(operation, "time-budget-ms", 2000))
+        );
+    }
+
+    private int property(String operation, String name, int defaultValue) {
+        Integer fallback = environment.getProperty(PREFIX + name, Integer.class, defaultValue);
+        return environment.getProperty(PREFIX + operation + "." + name, Integer.class, fallback);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Retry interrupted", e);
+        }
+    }
+
+    private record Policy(int maxAttempts, Duration baseBackoff, Duration maxBackoff, Duration timeBudget) {
+    }
+}
@@ -0,0 +1,52 @@
+package com.demo.store.snapshot;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Constants of the snapshot file format
+ */
+public final class SnapshotFormat {
+
+    static final byte[] MAGIC = "DSSNAP".getBytes(StandardCharsets.US_ASCII);
+    // Version 2 added the idempotency keys and the order outbox, version 3 the sale price of order items;
+    // version 1 and 2 files are still restored
+    static final int VERSION = 3;
+    static final int ORDER_ITEM_PRICE_VERSION = 3;
+    static final int MIN_VERSION = 1;
+    static final byte ROW = 1;
+    static final byte END_OF_TABLE = 0;
+    static final byte END_OF_SNAPSHOT = -1;
+
+    /**
+     * Tables in the order they are written and restored, parents before children
+     */
+    public enum Table {
+        PRODUCTS(1),
+        ORDERS(2),
+        ORDER_ITEMS(3),
+        IDEMPOTENCY_KEYS(4),
+        ORDER_OUTBOX(5);
+
+        private final byte tag;
+
+        Table(int tag) {
+            this.tag = (byte) tag;
+        }
+
+        byte tag() {
+            return tag;
+        }
+
+        static Table of(byte tag) {
+            for (Table table : values()) {
+                if (table.tag == tag) {
+                    return table;
+                }
+            }
+            throw new IllegalStateException("Unknown snapshot table tag " + tag);
+        }
+    }
+
+    private SnapshotFormat() {
+    }
+}
@@ -0,0 +1,122 @@
+package com.demo.store.snapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Reads a snapshot file written by {@link SnapshotWriter} through a read-only memory mapping,
+ * so restoring does not copy the file through stream buffers.
+ */
+public class SnapshotReader implements Closeable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int version;
+
+    /**
+     * Map the file and check its header
+     * @param path Snapshot file
+     * @throws IOException If the file cannot be mapped
+     * @throws IllegalStateException If the file is not a snapshot of a supported version or larger than 2 GB
+     */
+    public SnapshotReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        if (channel.size() > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IllegalStateException("Snapshot " + path + " is larger than 2 GB and cannot be mapped");
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        byte[] magic = new byte[SnapshotFormat.MAGIC.length];
+        buffer.get(magic);
+        this.version = buffer.getInt();
+        if (!Arrays.equals(magic, SnapshotFormat.MAGIC)
+                || version < SnapshotFormat.MIN_VERSION || version > SnapshotFormat.VERSION) {
+            channel.close();
+            throw new IllegalStateException("File " + path + " is not a snapshot of version "
+                    + SnapshotFormat.MIN_VERSION + " to " + SnapshotFormat.VERSION);
+        }
+    }
+
+    /**
+     * Get the format version the file was written with
+     * @return Format version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Move to the next table
+     * @return Next table, null at the end of the snapshot
+     */
+    public SnapshotFormat.Table nextTable() {
+        byte tag = buffer.get();
+        return tag == SnapshotFormat.END_OF_SNAPSHOT ? null : SnapshotFormat.Table.of(tag);
+    }
+
+    /**
+     * Move to the next row of the current table
+     * @return true if there is a row, false at the end of the table
+     */
+    public boolean nextRow() {
+        return buffer.get() == SnapshotFormat.ROW;
+    }
+
+    public Long readLong() {
+        return present() ? buffer.getLong() : null;
+    }
+
+    public Integer readInt() {
+        return present() ? buffer.getInt() : null;
+    }
+
+    public boolean readBoolean() {
+        return buffer.get() != 0;
+    }
+
+    public String readString() {
+        if (!present()) {
+            return null;
+        }
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public BigDecimal readDecimal() {
+        if (!present()) {
+            return null;
+        }
+        int scale = buffer.getInt();
+        byte[] unscaled = new byte[buffer.get()];
+        buffer.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    public LocalDateTime readTimestamp() {
+        if (!present()) {
+            return null;
+        }
+        long epochSecond = buffer.getLong();
+        return LocalDateTime.ofEpochSecond(epochSecond, buffer.getInt(), ZoneOffset.UTC);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private boolean present() {
+        return buffer.get() != 0;
+    }
+}
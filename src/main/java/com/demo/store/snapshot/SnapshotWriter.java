@@ -0,0 +1,114 @@
+package com.demo.store.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Writes a snapshot file: a header followed by tables of rows, each value preceded by a null flag.
+ * Strings are written as a length and UTF-8 bytes, decimals as scale and unscaled bytes and timestamps
+ * as UTC epoch seconds and nanos. The file is synced to disk on close.
+ */
+public class SnapshotWriter implements Closeable {
+
+    private final FileOutputStream file;
+    private final DataOutputStream out;
+
+    /**
+     * Create the file and write the header
+     * @param path File to create
+     * @throws IOException If the file cannot be written
+     */
+    public SnapshotWriter(Path path) throws IOException {
+        this.file = new FileOutputStream(path.toFile());
+        this.out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+        out.write(SnapshotFormat.MAGIC);
+        out.writeInt(SnapshotFormat.VERSION);
+    }
+
+    /**
+     * Start the rows of a table
+     * @param table Table
+     */
+    public void beginTable(SnapshotFormat.Table table) throws IOException {
+        out.writeByte(table.tag());
+    }
+
+    /**
+     * Start the next row of the current table
+     */
+    public void beginRow() throws IOException {
+        out.writeByte(SnapshotFormat.ROW);
+    }
+
+    /**
+     * End the rows of the current table
+     */
+    public void endTable() throws IOException {
+        out.writeByte(SnapshotFormat.END_OF_TABLE);
+    }
+
+    public void writeLong(Long value) throws IOException {
+        if (present(value)) {
+            out.writeLong(value);
+        }
+    }
+
+    public void writeInt(Integer value) throws IOException {
+        if (present(value)) {
+            out.writeInt(value);
+        }
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        out.writeBoolean(value);
+    }
+
+    public void writeString(String value) throws IOException {
+        if (present(value)) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    public void writeDecimal(BigDecimal value) throws IOException {
+        if (present(value)) {
+            byte[] unscaled = value.unscaledValue().toByteArray();
+            out.writeInt(value.scale());
+            out.writeByte(unscaled.length);
+            out.write(unscaled);
+        }
+    }
+
+    public void writeTimestamp(LocalDateTime value) throws IOException {
+        if (present(value)) {
+            out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(value.getNano());
+        }
+    }
+
+    /**
+     * Write the end marker, flush and sync the file to disk
+     */
+    @Override
+    public void close() throws IOException {
+        try (file) {
+            out.writeByte(SnapshotFormat.END_OF_SNAPSHOT);
+            out.flush();
+            file.getFD().sync();
+        }
+    }
+
+    private boolean present(Object value) throws IOException {
+        out.writeBoolean(value != null);
+        return value != null;
+    }
+}
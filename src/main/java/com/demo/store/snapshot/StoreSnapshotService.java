@@ -0,0 +1,350 @@
+package com.demo.store.snapshot;
+
+import com.demo.store.service.InventoryLedger;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Snapshot persistence of the products, orders, order_items, idempotency_keys and order_outbox tables,
+ * enabled by store.snapshot.enabled.
+ * <p>
+ * The tables are copied periodically and on shutdown to a compact binary file, read in one repeatable-read
+ * transaction so the tables are consistent with each other. Stock changes the inventory ledger has journaled
+ * but not yet written behind are added to the product stock in the same transaction, so a restored store
+ * never sells them again. Idempotency keys are kept so a retried request still gets its first response,
+ * and outbox rows so events not yet relayed to the event log are not lost. The file is written next to its final name
+ * and moved into place once it is on disk, so the latest snapshot is always complete. On startup the latest
+ * snapshot is restored with JDBC batches instead of running the SQL seed script, which is only used when there
+ * is no snapshot yet. Restoring runs before the startup listeners that read the tables, such as the search index
+ * and the inventory ledger.
+ */
+@Slf4j
+@Service
+@DependsOn("entityManagerFactory")
+@ConditionalOnProperty(name = "store.snapshot.enabled", havingValue = "true")
+public class StoreSnapshotService {
+
+    static final String FILE_PREFIX = "store-";
+    static final String FILE_SUFFIX = ".snapshot";
+
+    // Stock as the inventory ledger sees it: journaled changes are in the snapshot's orders, so they belong in its stock
+    private static final String SELECT_PRODUCTS =
+            "SELECT p.id, p.name, p.price, p.stock + COALESCE(SUM(j.delta), 0) AS stock, p.version FROM products p " +
+            "LEFT JOIN stock_journal j ON j.product_id = p.id " +
+            "GROUP BY p.id, p.name, p.price, p.stock, p.version ORDER BY p.id";
+    private static final String SELECT_ORDERS = "SELECT id, created_at, paid FROM orders ORDER BY id";
+    private static final String SELECT_ORDER_ITEMS = "SELECT id, order_id, product_id, quantity, price FROM order_items ORDER BY id";
+    private static final String SELECT_IDEMPOTENCY_KEYS =
+            "SELECT idempotency_key, request_hash, response, created_at FROM idempotency_keys ORDER BY idempotency_key";
+    private static final String SELECT_ORDER_OUTBOX = "SELECT id, order_id, type, occurred_at, items FROM order_outbox ORDER BY id";
+    private static final String INSERT_PRODUCT = "INSERT INTO products (id, name, price, stock, version) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_ORDER = "INSERT INTO orders (id, created_at, paid) VALUES (?, ?, ?)";
+    private static final String INSERT_ORDER_ITEM = "INSERT INTO order_items (id, order_id, product_id, quantity, price) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_IDEMPOTENCY_KEY =
+            "INSERT INTO idempotency_keys (idempotency_key, request_hash, response, created_at) VALUES (?, ?, ?, ?)";
+    // Files older than ORDER_ITEM_PRICE_VERSION have no sale price, so items get the price of the restored product
+    private static final String FILL_ORDER_ITEM_PRICES =
+            "UPDATE order_items i SET price = (SELECT p.price FROM products p WHERE p.id = i.product_id) WHERE i.price IS NULL";
+    private static final String INSERT_ORDER_OUTBOX =
+            "INSERT INTO order_outbox (id, order_id, type, occurred_at, items) VALUES (?, ?, ?, ?, ?)";
+    // Pooled sequences hand out the block below the value they return, so they restart one allocation past the max ID
+    private static final int ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate snapshotTransaction;
+    private final DataSource dataSource;
+    private final InventoryLedger inventoryLedger;
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+
+    @Value("${store.snapshot.dir}")
+    private Path dir;
+
+    @Value("${store.snapshot.retain:2}")
+    private int retain = 2;
+
+    @Value("${store.snapshot.batch-size:1000}")
+    private int batchSize = 1000;
+
+    @Value("${spring.sql.init.data-locations}")
+    private Resource seedScript;
+
+    public StoreSnapshotService(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                DataSource dataSource,
+                                InventoryLedger inventoryLedger) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        snapshotTransaction.setReadOnly(true);
+        this.dataSource = dataSource;
+        this.inventoryLedger = inventoryLedger;
+    }
+
+    /**
+     * Fill the empty tables from the latest snapshot, or from the seed script if there is none
+     * @throws IOException If the snapshot directory or file cannot be read
+     */
+    @PostConstruct
+    public void restoreOnStartup() throws IOException {
+        Files.createDirectories(dir);
+        Integer products = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM products", Integer.class);
+        if (products != null && products > 0) {
+            log.info("Products table already has {} rows, nothing restored", products);
+            return;
+        }
+        Optional<Path> latest = latest();
+        if (latest.isPresent()) {
+            restore(latest.get());
+        } else {
+            log.info("No snapshot in {}, seeding from {}", dir, seedScript);
+            ResourceDatabasePopulator populator = new ResourceDatabasePopulator(seedScript);
+            populator.setSqlScriptEncoding("UTF-8");
+            populator.execute(dataSource);
+        }
+    }
+
+    /**
+     * Write a snapshot periodically and once more on shutdown
+     */
+    @Scheduled(fixedDelayString = "${store.snapshot.interval-ms:300000}", initialDelayString = "${store.snapshot.interval-ms:300000}")
+    @PreDestroy
+    public void snapshot() {
+        try {
+            writeSnapshot();
+        } catch (RuntimeException e) {
+            log.error("Snapshot failed, the previous one is kept: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Write a snapshot of the tables and delete the ones beyond store.snapshot.retain.
+     * Runs at most once at a time; a call that finds another one in progress is skipped.
+     * @return Written snapshot file, empty if another snapshot was in progress
+     * @throws UncheckedIOException If the snapshot cannot be written
+     */
+    public Optional<Path> writeSnapshot() {
+        if (!snapshotLock.tryLock()) {
+            return Optional.empty();
+        }
+        try {
+            // Keeps the journal short; changes journaled after the flush are added to the stock by SELECT_PRODUCTS
+            inventoryLedger.flush();
+            long start = System.nanoTime();
+            Path file = dir.resolve(String.format("%s%020d%s", FILE_PREFIX, System.currentTimeMillis(), FILE_SUFFIX));
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            long[] rows = new long[SnapshotFormat.Table.values().length];
+            try (SnapshotWriter writer = new SnapshotWriter(tmp)) {
+                snapshotTransaction.executeWithoutResult(status -> writeTables(writer, rows));
+            } catch (IOException | RuntimeException e) {
+                deleteQuietly(tmp);
+                throw e;
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Snapshot {} written in {} ms: {} products, {} orders, {} order items, {} idempotency keys, {} outbox events",
+                    file.getFileName(), (System.nanoTime() - start) / 1_000_000, rows[0], rows[1], rows[2], rows[3], rows[4]);
+            prune();
+            return Optional.of(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Load a snapshot into the empty tables in one transaction and move the ID generators past the restored IDs
+     * @param file Snapshot file
+     * @throws IOException If the file cannot be read
+     */
+    public void restore(Path file) throws IOException {
+        long start = System.nanoTime();
+        long[] rows = new long[SnapshotFormat.Table.values().length];
+        try (SnapshotReader reader = new SnapshotReader(file)) {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (SnapshotFormat.Table table = reader.nextTable(); table != null; table = reader.nextTable()) {
+                    rows[table.ordinal()] = restoreTable(reader, table);
+                }
+                if (reader.getVersion() < SnapshotFormat.ORDER_ITEM_PRICE_VERSION) {
+                    jdbcTemplate.update(FILL_ORDER_ITEM_PRICES);
+                }
+                restartIdGenerators();
+            });
+        }
+        log.info("Snapshot {} restored in {} ms: {} products, {} orders, {} order items, {} idempotency keys, {} outbox events",
+                file.getFileName(), (System.nanoTime() - start) / 1_000_000, rows[0], rows[1], rows[2], rows[3], rows[4]);
+    }
+
+    /**
+     * Find the latest complete snapshot
+     * @return Snapshot file, empty if there is none
+     */
+    public Optional<Path> latest() throws IOException {
+        try (Stream<Path> files = snapshots()) {
+            return files.max(Comparator.naturalOrder());
+        }
+    }
+
+    private void writeTables(SnapshotWriter writer, long[] rows) {
+        rows[0] = writeTable(writer, SnapshotFormat.Table.PRODUCTS, SELECT_PRODUCTS, rs -> {
+            writer.writeLong(rs.getLong("id"));
+            writer.writeString(rs.getString("name"));
+            writer.writeDecimal(rs.getBigDecimal("price"));
+            writer.writeInt(rs.getObject("stock", Integer.class));
+            writer.writeLong(rs.getObject("version", Long.class));
+        });
+        rows[1] = writeTable(writer, SnapshotFormat.Table.ORDERS, SELECT_ORDERS, rs -> {
+            writer.writeLong(rs.getLong("id"));
+            writer.writeTimestamp(rs.getObject("created_at", LocalDateTime.class));
+            writer.writeBoolean(rs.getBoolean("paid"));
+        });
+        rows[2] = writeTable(writer, SnapshotFormat.Table.ORDER_ITEMS, SELECT_ORDER_ITEMS, rs -> {
+            writer.writeLong(rs.getLong("id"));
+            writer.writeLong(rs.getLong("order_id"));
+            writer.writeLong(rs.getLong("product_id"));
+            writer.writeInt(rs.getObject("quantity", Integer.class));
+            writer.writeDecimal(rs.getBigDecimal("price"));
+        });
+        rows[3] = writeTable(writer, SnapshotFormat.Table.IDEMPOTENCY_KEYS, SELECT_IDEMPOTENCY_KEYS, rs -> {
+            writer.writeString(rs.getString("idempotency_key"));
+            writer.writeString(rs.getString("request_hash"));
+            writer.writeString(rs.getString("response"));
+            writer.writeTimestamp(rs.getObject("created_at", LocalDateTime.class));
+        });
+        rows[4] = writeTable(writer, SnapshotFormat.Table.ORDER_OUTBOX, SELECT_ORDER_OUTBOX, rs -> {
+            writer.writeLong(rs.getLong("id"));
+            writer.writeLong(rs.getLong("order_id"));
+            writer.writeString(rs.getString("type"));
+            writer.writeTimestamp(rs.getObject("occurred_at", LocalDateTime.class));
+            writer.writeString(rs.getString("items"));
+        });
+    }
+
+    private long writeTable(SnapshotWriter writer, SnapshotFormat.Table table, String sql, RowWriter rowWriter) {
+        long[] count = {0};
+        try {
+            writer.beginTable(table);
+            jdbcTemplate.query(sql, rs -> {
+                try {
+                    writer.beginRow();
+                    rowWriter.write(rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+            writer.endTable();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count[0];
+    }
+
+    private long restoreTable(SnapshotReader reader, SnapshotFormat.Table table) {
+        String sql = switch (table) {
+            case PRODUCTS -> INSERT_PRODUCT;
+            case ORDERS -> INSERT_ORDER;
+            case ORDER_ITEMS -> INSERT_ORDER_ITEM;
+            case IDEMPOTENCY_KEYS -> INSERT_IDEMPOTENCY_KEY;
+            case ORDER_OUTBOX -> INSERT_ORDER_OUTBOX;
+        };
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        long count = 0;
+        while (reader.nextRow()) {
+            batch.add(switch (table) {
+                case PRODUCTS -> new Object[]{reader.readLong(), reader.readString(), reader.readDecimal(),
+                        reader.readInt(), reader.readLong()};
+                case ORDERS -> new Object[]{reader.readLong(), reader.readTimestamp(), reader.readBoolean()};
+                case ORDER_ITEMS -> new Object[]{reader.readLong(), reader.readLong(), reader.readLong(), reader.readInt(),
+                        reader.getVersion() >= SnapshotFormat.ORDER_ITEM_PRICE_VERSION ? reader.readDecimal() : null};
+                case IDEMPOTENCY_KEYS -> new Object[]{reader.readString(), reader.readString(), reader.readString(),
+                        reader.readTimestamp()};
+                case ORDER_OUTBOX -> new Object[]{reader.readLong(), reader.readLong(), reader.readString(),
+                        reader.readTimestamp(), reader.readString()};
+            });
+            if (batch.size() == batchSize) {
+                jdbcTemplate.batchUpdate(sql, batch);
+                count += batch.size();
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, batch);
+            count += batch.size();
+        }
+        return count;
+    }
+
+    private void restartIdGenerators() {
+        long products = maxId("products");
+        jdbcTemplate.execute("ALTER TABLE products ALTER COLUMN id RESTART WITH " + (products + 1));
+        jdbcTemplate.execute("ALTER SEQUENCE orders_seq RESTART WITH " + (maxId("orders") + 1 + ALLOCATION_SIZE));
+        jdbcTemplate.execute("ALTER SEQUENCE order_items_seq RESTART WITH " + (maxId("order_items") + 1 + ALLOCATION_SIZE));
+        jdbcTemplate.execute("ALTER SEQUENCE order_outbox_seq RESTART WITH " + (maxId("order_outbox") + 1 + ALLOCATION_SIZE));
+    }
+
+    private long maxId(String table) {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        return max != null ? max : 0;
+    }
+
+    private void prune() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = snapshots()) {
+            files = stream.sorted(Comparator.reverseOrder()).toList();
+        }
+        for (Path old : files.subList(Math.min(retain, files.size()), files.size())) {
+            Files.deleteIfExists(old);
+            log.debug("Old snapshot {} deleted", old.getFileName());
+        }
+    }
+
+    private Stream<Path> snapshots() throws IOException {
+        return Files.list(dir).filter(file -> {
+            String name = file.getFileName().toString();
+            return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+        });
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Incomplete snapshot {} could not be deleted: {}", file, e.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+    }
+}
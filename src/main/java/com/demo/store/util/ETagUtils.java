@@ -0,0 +1,77 @@
+package com.demo.store.util;
+
+import com.demo.store.model.Product;
+
+import java.util.List;
+import java.util.Objects;
+
+public class ETagUtils {
+
+    /**
+     * Strong ETag of a single product, derived from its ID and version
+     * @param id Product ID
+     * @param version Product version
+     * @return Quoted ETag value
+     */
+    public static String productETag(Long id, Long version) {
+        return "\"p%d-v%d\"".formatted(id, version != null ? version : 0L);
+    }
+
+    /**
+     * Strong ETag of a single product
+     * @param product Product object
+     * @return Quoted ETag value
+     */
+    public static String productETag(Product product) {
+        return productETag(product.getId(), product.getVersion());
+    }
+
+    /**
+     * Strong ETag of the whole catalog. Any update bumps a version and so the sum,
+     * any deletion lowers the count, any creation raises the highest ID.
+     * @param count Number of products
+     * @param versionSum Sum of all product versions
+     * @param maxId Highest product ID
+     * @return Quoted ETag value
+     */
+    public static String catalogETag(long count, long versionSum, long maxId) {
+        return "\"c%d-%d-%d\"".formatted(count, versionSum, maxId);
+    }
+
+    /**
+     * Strong ETag of the whole catalog computed from loaded products
+     * @param products List of all products
+     * @return Quoted ETag value
+     */
+    public static String catalogETag(List<Product> products) {
+        long versionSum = 0;
+        long maxId = 0;
+        for (Product product : products) {
+            versionSum += Objects.requireNonNullElse(product.getVersion(), 0L);
+            maxId = Math.max(maxId, product.getId());
+        }
+        return catalogETag(products.size(), versionSum, maxId);
+    }
+
+    /**
+     * Check an If-None-Match request header against the current ETag
+     * @param ifNoneMatch Header value, may be null
+     * @param eTag Current quoted ETag
+     * @return true if the client already has the current representation
+     */
+    public static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
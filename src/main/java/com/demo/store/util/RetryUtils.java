@@ -1,57 +1,21 @@
 package com.demo.store.util;
 
-import java.util.function.Supplier;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class RetryUtils {
 
-    @SafeVarargs
-    public static <T> T retry(
-            int maxAttempts,
-            long backoffMillis,
-            Class<? extends Throwable> retryOn,
-            Supplier<T> operation,
-            Class<? extends Throwable>... allowedExceptions
-    ) {
-        int attempt = 0;
-
-        while (attempt < maxAttempts) {
-            try {
-                return operation.get();
-            } catch (Throwable e) {
-                attempt++;
-
-                // Skip "allowed" exceptions
-                for (Class<? extends Throwable> allowed : allowedExceptions) {
-                    if (allowed.isInstance(e)) {
-                        throw sneakyThrow(e);
-                    }
-                }
-
-                // No retry-exception → discard immediately
-                if (!retryOn.isInstance(e)) {
-                    throw sneakyThrow(e);
-                }
-
-                // Last attempt failed → throw original exception
-                if (attempt >= maxAttempts) {
-                    throw sneakyThrow(e);
-                }
-
-                try {
-                    Thread.sleep(backoffMillis);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Retry interrupted", ie);
-                }
-            }
+    /**
+     * Exponential backoff with full jitter: a random delay between 0 and min(max, base * 2^(attempt - 1))
+     * @param attempt Number of the failed attempt, starting at 1
+     * @param baseMillis Upper bound of the delay after the first attempt
+     * @param maxMillis Upper bound of any delay
+     * @return Delay before the next attempt in milliseconds
+     */
+    public static long fullJitterBackoff(int attempt, long baseMillis, long maxMillis) {
+        long ceiling = baseMillis << Math.min(attempt - 1, 30);
+        if (ceiling <= 0 || ceiling > maxMillis) {
+            ceiling = maxMillis;
         }
-
-        throw new IllegalStateException("Unreachable code");
-    }
-
-    // allows to throw checked exceptions without wrapper
-    @SuppressWarnings("unchecked")
-    private static <T extends Throwable> RuntimeException sneakyThrow(Throwable t) throws T {
-        throw (T) t;
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
     }
 }
@@ -0,0 +1,39 @@
+package com.demo.store.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class TransactionUtils {
+
+    /**
+     * Run an action once the current transaction has committed.
+     * Without an active transaction the action runs immediately.
+     * @param action Action to run
+     */
+    public static void afterCommit(Runnable action) {
+        afterCompletion(action, () -> { });
+    }
+
+    /**
+     * Run one of two actions depending on how the current transaction completes.
+     * Without an active transaction the commit action runs immediately.
+     * @param onCommit Action to run after a successful commit
+     * @param onRollback Action to run after a rollback
+     */
+    public static void afterCompletion(Runnable onCommit, Runnable onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            onCommit.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    onCommit.run();
+                } else {
+                    onRollback.run();
+                }
+            }
+        });
+    }
+}
@@ -16,9 +16,11 @@ ALTER TABLE products ALTER COLUMN id RESTART WITH 6;
 MERGE INTO orders (id, created_at, paid) KEY(id) VALUES (1,  NOW(), true);
 MERGE INTO orders (id, created_at, paid) KEY(id) VALUES (2,  NOW(), false);
 
-ALTER TABLE orders ALTER COLUMN id RESTART WITH 3;
+MERGE INTO order_items (id, order_id, product_id, quantity, price) KEY(id) VALUES (1, 1, 3, 3, 23.90);
+MERGE INTO order_items (id, order_id, product_id, quantity, price) KEY(id) VALUES (2, 2, 1, 2, 31.90);
+MERGE INTO order_items (id, order_id, product_id, quantity, price) KEY(id) VALUES (3, 2, 2, 1, 19.90);
 
-MERGE INTO order_items (order_id, product_id, quantity) KEY(order_id, product_id) VALUES (1, 3, 3);
-MERGE INTO order_items (order_id, product_id, quantity) KEY(order_id, product_id) VALUES (2, 1, 2);
-MERGE INTO order_items (order_id, product_id, quantity) KEY(order_id, product_id) VALUES (2, 2, 1);
+-- IDs come from pooled sequences (allocation size 50): the first block handed out after a restart at 101 is 52..101
+ALTER SEQUENCE orders_seq RESTART WITH 101;
+ALTER SEQUENCE order_items_seq RESTART WITH 101;
 
@@ -0,0 +1,234 @@
+package com.demo.store.cache;
+
+import com.demo.store.dto.ProductStockDTO;
+import com.demo.store.exception.ServiceUnavailableException;
+import com.demo.store.model.Product;
+import com.demo.store.repository.ProductRepository;
+import com.demo.store.util.ETagUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductCacheTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        product = new Product();
+        product.setId(1L);
+        product.setName("Test Product");
+        product.setPrice(BigDecimal.valueOf(19.99));
+        product.setStockQuantity(10);
+        product.setVersion(0L);
+    }
+
+    /**
+     * Second read of a product is served from the cache
+     */
+    @Test
+    void getProduct_ShouldLoadOnce_WhenReadTwice() {
+        ProductCache productCache = new ProductCache(productRepository, meterRegistry, 100, 600, 60_000, 1000);
+        AtomicInteger loads = new AtomicInteger();
+
+        productCache.getProduct(1L, id -> { loads.incrementAndGet(); return Optional.of(product); });
+        Optional<Product> cached = productCache.getProduct(1L, id -> { loads.incrementAndGet(); return Optional.of(product); });
+
+        assertTrue(cached.isPresent());
+        assertEquals(1, loads.get());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "products").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "products").tag("result", "miss").functionCounter().count());
+    }
+
+    /**
+     * Invalidated product is loaded again
+     */
+    @Test
+    void evictAfterCommit_ShouldInvalidateProductAndCatalog() {
+        ProductCache productCache = new ProductCache(productRepository, meterRegistry, 100, 600, 60_000, 1000);
+        AtomicInteger loads = new AtomicInteger();
+
+        productCache.getProduct(1L, id -> { loads.incrementAndGet(); return Optional.of(product); });
+        productCache.getCatalog(() -> { loads.incrementAndGet(); return List.of(product); });
+        productCache.evictAfterCommit(List.of(1L)); // no transaction: invalidated immediately
+        productCache.getProduct(1L, id -> { loads.incrementAndGet(); return Optional.of(product); });
+        productCache.getCatalog(() -> { loads.incrementAndGet(); return List.of(product); });
+
+        assertEquals(4, loads.get());
+    }
+
+    /**
+     * The catalog ETag comes from the cached catalog while it is fresh, and from the loader otherwise
+     */
+    @Test
+    void getCatalogETag_ShouldUseCachedCatalog_UntilItIsInvalidated() {
+        ProductCache productCache = new ProductCache(productRepository, meterRegistry, 100, 600, 60_000, 1000);
+        assertEquals("\"loaded\"", productCache.getCatalogETag(() -> "\"loaded\""));
+
+        ProductCatalog catalog = productCache.getCatalog(() -> List.of(product));
+
+        assertEquals(ETagUtils.catalogETag(List.of(product)), catalog.eTag());
+        assertEquals(catalog.eTag(), productCache.getCatalogETag(() -> fail("Cached ETag must be used")));
+        productCache.evictAfterCommit(List.of(1L));
+        assertEquals("\"loaded\"", productCache.getCatalogETag(() -> "\"loaded\""));
+    }
+
+    /**
+     * Stock older than the staleness bound is re-read without reloading the product
+     */
+    @Test
+    void getProduct_ShouldRefreshStock_WhenStockIsStale() {
+        ProductCache productCache = new ProductCache(productRepository, meterRegistry, 100, 600, 0, 1000);
+        when(productRepository.findStockById(1L)).thenReturn(Optional.of(new ProductStockDTO(1L, 3, 2L)));
+
+        productCache.getProduct(1L, id -> Optional.of(product));
+        Optional<Product> refreshed = productCache.getProduct(1L, id -> fail("Product must not be reloaded"));
+
+        assertTrue(refreshed.isPresent());
+        assertEquals(3, refreshed.get().getStockQuantity());
+        assertEquals(2L, refreshed.get().getVersion());
+        assertEquals(10, product.getStockQuantity()); // the loaded entity is never modified
+    }
+
+    /**
+     * A read that arrives while the same product is loading waits for that load instead of running its own
+     */
+    @Test
+    void getProduct_ShouldShareLoadInFlight() throws Exception {
+        ProductCache productCache = new ProductCache(productRepository, meterRegistry, 100, 600, 60_000, 5000);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Optional<Product>> leader = CompletableFuture.supplyAsync(() -> productCache.getProduct(1L, id -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return Optional.of(product);
+        }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Optional<Product>> follower = CompletableFuture.supplyAsync(() -> productCache.getProduct(1L, id -> {
+            loads.incrementAndGet();
+            return Optional.of(product);
+        }));
+        while (meterRegistry.get("store.products.loads").tag("outcome", "coalesced").counter().count() == 0) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertSame(leader.get(5, TimeUnit.SECONDS).orElseThrow(), follower.get(5, TimeUnit.SECONDS).orElseThrow());
+        assertEquals(1, loads.get());
+        assertEquals(1.0, meterRegistry.get("store.products.loads").tag("outcome", "executed").counter().count());
+    }
+
+    /**
+     * A read that waited load-wait-ms for a load in flight is rejected instead of loading the product on its own
+     */
+    @Test
+    void getProduct_ShouldBeRejected_WhenSharedLoadTakesTooLong() throws Exception {
+        ProductCache productCache = new ProductCache(productRepository, meterRegistry, 100, 600, 60_000, 50);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Optional<Product>> leader = CompletableFuture.supplyAsync(() -> productCache.getProduct(1L, id -> {
+            loading.countDown();
+            await(release);
+            return Optional.of(product);
+        }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        assertThrows(ServiceUnavailableException.class,
+                () -> productCache.getProduct(1L, id -> fail("A waiting read must not load on its own")));
+        release.countDown();
+
+        assertTrue(leader.get(5, TimeUnit.SECONDS).isPresent());
+        assertEquals(1.0, meterRegistry.get("store.products.loads").tag("outcome", "wait_timeout").counter().count());
+        assertEquals(1.0, meterRegistry.get("store.products.loads").tag("outcome", "executed").counter().count());
+    }
+
+    /**
+     * A read that waited load-wait-ms for another read's stock re-read gets the entry read before
+     */
+    @Test
+    void getProduct_ShouldServeStaleEntry_WhenSharedStockReadTakesTooLong() throws Exception {
+        ProductCache productCache = new ProductCache(productRepository, meterRegistry, 100, 600, 20, 50);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(productRepository.findStockById(1L)).thenAnswer(invocation -> {
+            loading.countDown();
+            await(release);
+            return Optional.of(new ProductStockDTO(1L, 3, 2L));
+        });
+        productCache.getProduct(1L, id -> Optional.of(product));
+        Thread.sleep(50);
+
+        CompletableFuture<Optional<Product>> leader = CompletableFuture.supplyAsync(
+                () -> productCache.getProduct(1L, id -> fail("Product must not be reloaded")));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        Optional<Product> follower = productCache.getProduct(1L, id -> fail("Product must not be reloaded"));
+        release.countDown();
+
+        assertEquals(10, follower.orElseThrow().getStockQuantity());
+        assertEquals(3, leader.get(5, TimeUnit.SECONDS).orElseThrow().getStockQuantity());
+        verify(productRepository, times(1)).findStockById(1L);
+    }
+
+    /**
+     * Concurrent reads of a catalog with stale stock share one stock re-read
+     */
+    @Test
+    void getCatalog_ShouldShareStockReadInFlight() throws Exception {
+        ProductCache productCache = new ProductCache(productRepository, meterRegistry, 100, 600, 20, 5000);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(productRepository.findAllStock()).thenAnswer(invocation -> {
+            loading.countDown();
+            await(release);
+            return List.of(new ProductStockDTO(1L, 3, 2L));
+        });
+        productCache.getCatalog(() -> List.of(product));
+        Thread.sleep(50);
+
+        CompletableFuture<ProductCatalog> leader = CompletableFuture.supplyAsync(
+                () -> productCache.getCatalog(() -> fail("Catalog must not be reloaded")));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<ProductCatalog> follower = CompletableFuture.supplyAsync(
+                () -> productCache.getCatalog(() -> fail("Catalog must not be reloaded")));
+        while (meterRegistry.get("store.products.loads").tag("outcome", "coalesced").counter().count() == 0) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertEquals(3, leader.get(5, TimeUnit.SECONDS).products().get(0).getStockQuantity());
+        assertSame(leader.get(5, TimeUnit.SECONDS), follower.get(5, TimeUnit.SECONDS));
+        verify(productRepository, times(1)).findAllStock();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
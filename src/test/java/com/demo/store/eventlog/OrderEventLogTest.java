@@ -0,0 +1,74 @@
+package com.demo.store.eventlog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderEventLogTest {
+
+    @TempDir
+    private Path dir;
+
+    /**
+     * Records get sequential offsets across segments and are read back from any offset
+     */
+    @Test
+    void append_ShouldAssignSequentialOffsetsAcrossSegments() throws IOException {
+        OrderEventLog log = open();
+
+        assertEquals(0, log.append(records(0, 5)));
+        assertEquals(5, log.append(records(5, 6)));
+
+        assertEquals(11, log.endOffset());
+        assertEquals(3, segmentCount());
+        List<LogRecord> read = log.read(3, 5);
+        assertEquals(List.of(3L, 4L, 5L, 6L, 7L), read.stream().map(LogRecord::offset).toList());
+        assertEquals("event-7", new String(read.get(4).payload(), StandardCharsets.UTF_8));
+        assertTrue(log.read(11, 10).isEmpty());
+        log.close();
+    }
+
+    /**
+     * A reopened log continues after its last record
+     */
+    @Test
+    void open_ShouldRecoverEndOffset() throws IOException {
+        OrderEventLog log = open();
+        log.append(records(0, 7));
+        log.close();
+
+        OrderEventLog reopened = open();
+        assertEquals(7, reopened.endOffset());
+        assertEquals(7, reopened.append(records(7, 1)));
+        assertEquals("event-6", new String(reopened.read(6, 1).get(0).payload(), StandardCharsets.UTF_8));
+        reopened.close();
+    }
+
+    private OrderEventLog open() throws IOException {
+        // Segments of at most 4 records
+        OrderEventLog log = new OrderEventLog(dir, 1024, 4);
+        log.open();
+        return log;
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.toString().endsWith(LogSegment.DATA_SUFFIX)).count();
+        }
+    }
+
+    private static List<byte[]> records(int from, int count) {
+        return IntStream.range(from, from + count)
+                .mapToObj(i -> ("event-" + i).getBytes(StandardCharsets.UTF_8))
+                .toList();
+    }
+}
@@ -0,0 +1,137 @@
+package com.demo.store.integration;
+
+import com.demo.store.dto.CreateOrderDTO;
+import com.demo.store.dto.OrderDTO;
+import com.demo.store.dto.ProductIdQuantityDTO;
+import com.demo.store.dto.SalesBucketDTO;
+import com.demo.store.dto.UpdateProductDTO;
+import com.demo.store.service.SalesRollupService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class AnalyticsControllerIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    /**
+     * Test that checks if created and paid orders show up in the rollups once flushed,
+     * and that a rebuild from the order tables gives the same result, at the prices the units were sold at.
+     */
+    @Test
+    void getSales_ShouldCountCreatedAndPaidOrders() throws Exception {
+        List<SalesBucketDTO> before = getSales();
+
+        OrderDTO order = createOrder(3L, 2);
+        mockMvc.perform(put("/api/v1/orders/" + order.getId() + "/pay"))
+                .andExpect(status().isOk());
+        salesRollupService.flush();
+
+        List<SalesBucketDTO> after = getSales();
+        assertEquals(units(before) + 2, units(after));
+        assertEquals(paidUnits(before) + 2, paidUnits(after));
+        assertEquals(0, new BigDecimal("23.90").multiply(BigDecimal.valueOf(units(after))).compareTo(revenue(after)));
+
+        setPrice(3L, new BigDecimal("99.90"));
+        try {
+            assertEquals(0, revenue(after).compareTo(revenue(getSales())));
+
+            mockMvc.perform(post("/api/v1/analytics/rebuild"))
+                    .andExpect(status().isNoContent());
+
+            List<SalesBucketDTO> rebuilt = getSales();
+            assertEquals(units(after), units(rebuilt));
+            assertEquals(paidUnits(after), paidUnits(rebuilt));
+            assertEquals(0, revenue(after).compareTo(revenue(rebuilt)));
+        } finally {
+            setPrice(3L, new BigDecimal("23.90"));
+        }
+    }
+
+    /**
+     * Test that checks if an unknown bucket or an empty range is rejected.
+     */
+    @Test
+    void getSales_ShouldReturnBadRequest_WhenParametersAreInvalid() throws Exception {
+        mockMvc.perform(get("/api/v1/analytics/sales")
+                        .param("bucket", "WEEK")
+                        .param("from", "2025-01-01T00:00:00")
+                        .param("to", "2025-01-02T00:00:00"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/v1/analytics/sales")
+                        .param("bucket", "DAY")
+                        .param("from", "2025-01-02T00:00:00")
+                        .param("to", "2025-01-01T00:00:00"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private List<SalesBucketDTO> getSales() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        String json = mockMvc.perform(get("/api/v1/analytics/sales")
+                        .param("bucket", "DAY")
+                        .param("from", now.minusDays(1).toString())
+                        .param("to", now.plusDays(1).toString())
+                        .param("productId", "3"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(json, new TypeReference<>() { });
+    }
+
+    private OrderDTO createOrder(Long productId, int quantity) throws Exception {
+        ProductIdQuantityDTO item = new ProductIdQuantityDTO();
+        item.setProductId(productId);
+        item.setQuantity(quantity);
+        CreateOrderDTO order = new CreateOrderDTO();
+        order.setItems(List.of(item));
+        String json = mockMvc.perform(post("/api/v1/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(order)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(json, OrderDTO.class);
+    }
+
+    private void setPrice(Long productId, BigDecimal price) throws Exception {
+        UpdateProductDTO product = new UpdateProductDTO();
+        product.setPrice(price);
+        mockMvc.perform(put("/api/v1/products/" + productId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(product)))
+                .andExpect(status().isOk());
+    }
+
+    private static long units(List<SalesBucketDTO> sales) {
+        return sales.stream().mapToLong(SalesBucketDTO::getUnits).sum();
+    }
+
+    private static long paidUnits(List<SalesBucketDTO> sales) {
+        return sales.stream().mapToLong(SalesBucketDTO::getPaidUnits).sum();
+    }
+
+    private static BigDecimal revenue(List<SalesBucketDTO> sales) {
+        return sales.stream().map(SalesBucketDTO::getRevenue).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
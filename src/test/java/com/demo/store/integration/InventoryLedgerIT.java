@@ -0,0 +1,75 @@
+package com.demo.store.integration;
+
+import com.demo.store.dto.CreateOrderDTO;
+import com.demo.store.dto.ProductIdQuantityDTO;
+import com.demo.store.service.InventoryLedger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        // A database of its own, so the ledger owning the stock does not affect the shared context
+        "spring.datasource.url=jdbc:h2:mem:inventory-ledger-it",
+        "order.events.log-dir=${java.io.tmpdir}/demo-store/order-events-inventory-ledger-it",
+        "order.stock-reservation-mode=in-memory",
+        // The test decides when the write-behind runs
+        "order.inventory.flush-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+class InventoryLedgerIT {
+
+    private static final String SELECT_STOCK = "SELECT stock FROM products WHERE id = ?";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    /**
+     * Test that checks if stock sold before a crash stays sold when the ledger is seeded again before the flush,
+     * and that the flush then moves it to the products table.
+     */
+    @Test
+    void seed_ShouldKeepUnflushedSales() throws Exception {
+        inventoryLedger.flush();
+        int stock = jdbcTemplate.queryForObject(SELECT_STOCK, Integer.class, 4L);
+
+        ProductIdQuantityDTO item = new ProductIdQuantityDTO();
+        item.setProductId(4L);
+        item.setQuantity(3);
+        CreateOrderDTO order = new CreateOrderDTO();
+        order.setItems(List.of(item));
+        mockMvc.perform(post("/api/v1/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(order)))
+                .andExpect(status().isCreated());
+
+        // Counters are rebuilt as after a restart, while the sale exists only in the journal
+        inventoryLedger.seed();
+        assertEquals(stock, jdbcTemplate.queryForObject(SELECT_STOCK, Integer.class, 4L));
+        assertEquals(stock - 3, inventoryLedger.getAvailable(4L));
+
+        inventoryLedger.flush();
+        assertEquals(stock - 3, jdbcTemplate.queryForObject(SELECT_STOCK, Integer.class, 4L));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stock_journal", Integer.class));
+        assertEquals(stock - 3, inventoryLedger.getAvailable(4L));
+    }
+}
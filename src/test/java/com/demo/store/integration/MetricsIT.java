@@ -0,0 +1,76 @@
+package com.demo.store.integration;
+
+import com.demo.store.dto.CreateOrderDTO;
+import com.demo.store.dto.ProductIdQuantityDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// This context runs next to the shared one, so it needs a database and an event log of its own
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:metrics-it",
+        "order.events.log-dir=${java.io.tmpdir}/demo-store/order-events-metrics-it"
+})
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class MetricsIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Test that checks if order metrics are exposed in Prometheus format
+     * after an order was created and another one was rejected.
+     */
+    @Test
+    void prometheus_ShouldExposeOrderMetrics() throws Exception {
+        createOrder(1L, 1);
+        createOrder(1L, 1_000_000);
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("store_orders_create_seconds_bucket")))
+                .andExpect(content().string(containsString("store_orders_rejected_total{reason=\"insufficient_stock\"} 1.0")))
+                .andExpect(content().string(containsString("store_optimistic_lock_conflicts_total{outcome=\"retried\"}")))
+                .andExpect(content().string(containsString("store_orders_pending")));
+    }
+
+    /**
+     * Test that checks if the readiness probe is exposed and reports UP once the startup work is done.
+     */
+    @Test
+    void readiness_ShouldBeUp_AfterStartup() throws Exception {
+        mockMvc.perform(get("/actuator/health/readiness"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("UP")));
+    }
+
+    private void createOrder(Long productId, int quantity) throws Exception {
+        ProductIdQuantityDTO item = new ProductIdQuantityDTO();
+        item.setProductId(productId);
+        item.setQuantity(quantity);
+        CreateOrderDTO order = new CreateOrderDTO();
+        order.setItems(List.of(item));
+        mockMvc.perform(post("/api/v1/orders")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(order)));
+    }
+}
@@ -1,23 +1,35 @@
 package com.demo.store.integration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.demo.store.controller.OrderController;
+import com.demo.store.dto.CreateOrderBatchDTO;
 import com.demo.store.dto.CreateOrderDTO;
+import com.demo.store.dto.OrderDTO;
 import com.demo.store.dto.ProductIdQuantityDTO;
+import com.demo.store.eventlog.OrderEventLog;
+import com.demo.store.limiter.AdaptiveConcurrencyLimiter;
+import com.demo.store.limiter.OrderWriteLimitInterceptor;
 import com.demo.store.model.Order;
 import com.demo.store.repository.OrderRepository;
+import com.demo.store.service.OrderEventService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -35,6 +47,21 @@ class OrderControllerIT {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private OrderEventService orderEventService;
+
+    @Autowired
+    private OrderEventLog orderEventLog;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private OrderWriteLimitInterceptor orderWriteLimitInterceptor;
+
     /**
      * Test that checks if the endpoint /api/v1/orders returns
      * a list of orders with the correct structure and values.
@@ -51,6 +78,52 @@ class OrderControllerIT {
                 .andExpect(jsonPath("$[1].paid", is(false)));
     }
 
+    /**
+     * Test that checks if the endpoint /api/v1/orders pages through orders
+     * with the cursor passed in the response header.
+     */
+    @Test
+    void getAllOrders_ShouldReturnNextCursor_WhenPageIsFull() throws Exception {
+        System.out.println("Text executing: getAllOrders_ShouldReturnNextCursor_WhenPageIsFull");
+        String cursor = mockMvc.perform(get("/api/v1/orders").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)))
+                .andExpect(jsonPath("$[0].id", is(1)))
+                .andExpect(header().exists(OrderController.NEXT_CURSOR_HEADER))
+                .andReturn().getResponse().getHeader(OrderController.NEXT_CURSOR_HEADER);
+
+        mockMvc.perform(get("/api/v1/orders").param("size", "1").param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)))
+                .andExpect(jsonPath("$[0].id", is(2)));
+
+        mockMvc.perform(get("/api/v1/orders").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test that checks if the endpoint /api/v1/orders/export streams
+     * every order as one NDJSON line.
+     */
+    @Test
+    void exportOrders_ShouldStreamOneLinePerOrder() throws Exception {
+        System.out.println("Text executing: exportOrders_ShouldStreamOneLinePerOrder");
+        MvcResult result = mockMvc.perform(get("/api/v1/orders/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assert(lines.length == orderRepository.count());
+        OrderDTO first = objectMapper.readValue(lines[0], OrderDTO.class);
+        assert(first.getId() == 1L);
+        assert(first.getItems().size() == 1);
+    }
+
     /**
      * Test that checks if the endpoint /api/v1/orders/{id} returns
      * the correct order by ID with the correct structure and values.
@@ -86,6 +159,181 @@ class OrderControllerIT {
                 .andExpect(jsonPath("$.items", hasSize(1)));
     }
 
+    /**
+     * Test that checks if the endpoint /api/v1/orders/batch creates the orders
+     * that can be fulfilled and rejects the others one by one.
+     */
+    @Test
+    void createOrders_ShouldReturnResultPerOrder() throws Exception {
+        CreateOrderBatchDTO batch = new CreateOrderBatchDTO();
+        batch.setOrders(List.of(
+                orderOf(4L, 10), // Svijanský Máz, 25 in stock
+                orderOf(4L, 20), // only 15 left after the first order
+                orderOf(4L, 15),
+                orderOf(999L, 1)
+        ));
+
+        mockMvc.perform(post("/api/v1/orders/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(4)))
+                .andExpect(jsonPath("$[0].created", is(true)))
+                .andExpect(jsonPath("$[0].order.id").exists())
+                .andExpect(jsonPath("$[1].created", is(false)))
+                .andExpect(jsonPath("$[1].error", containsString("Insufficient stock")))
+                .andExpect(jsonPath("$[2].created", is(true)))
+                .andExpect(jsonPath("$[2].order.items[0].quantity", is(15)))
+                .andExpect(jsonPath("$[3].created", is(false)))
+                .andExpect(jsonPath("$[3].error", is("Product not found")));
+
+        mockMvc.perform(get("/api/v1/products/4"))
+                .andExpect(jsonPath("$.stockQuantity", is(0)));
+    }
+
+    /**
+     * Test that checks if a repeated request with the same Idempotency-Key gets the first order back
+     * without reserving stock again, and that the key cannot be reused for a different order.
+     */
+    @Test
+    void createOrder_ShouldReplayFirstResponse_WhenIdempotencyKeyRepeats() throws Exception {
+        int stockBefore = stockOf(3L);
+        String body = objectMapper.writeValueAsString(orderOf(3L, 2));
+
+        String first = mockMvc.perform(post("/api/v1/orders")
+                        .header(OrderController.IDEMPOTENCY_KEY_HEADER, "retry-test-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(OrderController.IDEMPOTENT_REPLAYED_HEADER, "false"))
+                .andReturn().getResponse().getContentAsString();
+        // Stored with the order, so the key never waits for a response that was not written
+        String storedResponse = jdbcTemplate.queryForObject(
+                "SELECT response FROM idempotency_keys WHERE idempotency_key = 'retry-test-1'", String.class);
+        assertEquals(objectMapper.readValue(first, OrderDTO.class).getId(), objectMapper.readValue(storedResponse, OrderDTO.class).getId());
+        String second = mockMvc.perform(post("/api/v1/orders")
+                        .header(OrderController.IDEMPOTENCY_KEY_HEADER, "retry-test-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(OrderController.IDEMPOTENT_REPLAYED_HEADER, "true"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(objectMapper.readValue(first, OrderDTO.class).getId(), objectMapper.readValue(second, OrderDTO.class).getId());
+        assertEquals(stockBefore - 2, stockOf(3L));
+
+        mockMvc.perform(post("/api/v1/orders")
+                        .header(OrderController.IDEMPOTENCY_KEY_HEADER, "retry-test-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(orderOf(3L, 1))))
+                .andExpect(status().isConflict());
+    }
+
+    /**
+     * Test that checks if the creation and payment of an order are relayed to the event log
+     * and can be read from the offset the log ended at before.
+     */
+    @Test
+    void getOrderEvents_ShouldReturnRelayedLifecycleEvents() throws Exception {
+        orderEventService.relay();
+        long from = orderEventLog.endOffset();
+
+        String json = mockMvc.perform(post("/api/v1/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(orderOf(3L, 1))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long orderId = objectMapper.readValue(json, OrderDTO.class).getId();
+        mockMvc.perform(put("/api/v1/orders/" + orderId + "/pay"))
+                .andExpect(status().isOk());
+        orderEventService.relay();
+
+        mockMvc.perform(get("/api/v1/orders/events")
+                        .param("from", String.valueOf(from)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(OrderController.NEXT_OFFSET_HEADER, String.valueOf(from + 2)))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].offset", is((int) from)))
+                .andExpect(jsonPath("$[0].orderId", is(orderId.intValue())))
+                .andExpect(jsonPath("$[0].type", is("CREATED")))
+                .andExpect(jsonPath("$[0].items[0].productId", is(3)))
+                .andExpect(jsonPath("$[0].items[0].quantity", is(1)))
+                .andExpect(jsonPath("$[1].type", is("PAID")));
+
+        mockMvc.perform(get("/api/v1/orders/events")
+                        .param("from", String.valueOf(from + 2)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(OrderController.NEXT_OFFSET_HEADER, String.valueOf(from + 2)))
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    /**
+     * Test that checks if the outbox sequence is moved past the event IDs already in the log
+     * when it starts over, as it does on every boot of the in-memory database.
+     */
+    @Test
+    void startup_ShouldMoveOutboxSequencePastLoggedEventIds() throws Exception {
+        System.out.println("Text executing: startup_ShouldMoveOutboxSequencePastLoggedEventIds");
+        mockMvc.perform(post("/api/v1/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(orderOf(3L, 1))))
+                .andExpect(status().isCreated());
+        orderEventService.relay();
+        long lastEventId = orderEventService.readEvents(orderEventLog.endOffset() - 1, 1).get(0).event().eventId();
+
+        jdbcTemplate.execute("ALTER SEQUENCE order_outbox_seq RESTART WITH 1");
+        orderEventService.afterSingletonsInstantiated();
+
+        Long next = jdbcTemplate.queryForObject(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'ORDER_OUTBOX_SEQ'", Long.class);
+        // A pooled sequence hands out the 50 IDs below the value it returns
+        assertTrue(next - 50 > lastEventId);
+    }
+
+    /**
+     * Test that checks if order writes past the concurrency limit are rejected with 429 and Retry-After,
+     * while reads are not limited.
+     */
+    @Test
+    void createOrder_ShouldBeRejected_WhenConcurrencyLimitIsReached() throws Exception {
+        System.out.println("Text executing: createOrder_ShouldBeRejected_WhenConcurrencyLimitIsReached");
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        // The limiter is off by default
+        ReflectionTestUtils.setField(orderWriteLimitInterceptor, "enabled", true);
+        try {
+            for (AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire(); permit != null;
+                 permit = concurrencyLimiter.tryAcquire()) {
+                permits.add(permit);
+            }
+
+            mockMvc.perform(post("/api/v1/orders")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(orderOf(4L, 1))))
+                    .andExpect(status().isTooManyRequests())
+                    .andExpect(header().string("Retry-After", "1"));
+            mockMvc.perform(get("/api/v1/orders/1"))
+                    .andExpect(status().isOk());
+        } finally {
+            permits.forEach(concurrencyLimiter::release);
+            ReflectionTestUtils.setField(orderWriteLimitInterceptor, "enabled", false);
+        }
+    }
+
+    private int stockOf(Long productId) throws Exception {
+        String json = mockMvc.perform(get("/api/v1/products/" + productId))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(json).get("stockQuantity").asInt();
+    }
+
+    private CreateOrderDTO orderOf(Long productId, int quantity) {
+        ProductIdQuantityDTO item = new ProductIdQuantityDTO();
+        item.setProductId(productId);
+        item.setQuantity(quantity);
+        CreateOrderDTO order = new CreateOrderDTO();
+        order.setItems(List.of(item));
+        return order;
+    }
+
     /**
      * Test that checks the case of updating the order status to paid.
      */
@@ -0,0 +1,94 @@
+package com.demo.store.integration;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        // This context runs next to the shared one, so it needs a database and an event log of its own
+        "spring.datasource.url=jdbc:h2:mem:query-count-it",
+        "order.events.log-dir=${java.io.tmpdir}/demo-store/order-events-query-count-it"
+})
+@AutoConfigureMockMvc
+class OrderQueryCountIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    /**
+     * Test that checks if a page of orders is read with one query for the IDs
+     * and one query for the orders with their items and products, without loading entities.
+     */
+    @Test
+    void getAllOrders_ShouldUseTwoQueries() throws Exception {
+        mockMvc.perform(get("/api/v1/orders"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(1)))
+                .andExpect(jsonPath("$[0].items[0].product.name").exists());
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    /**
+     * Test that checks if a single order is read with one query without loading entities.
+     */
+    @Test
+    void getOrderById_ShouldUseOneQuery() throws Exception {
+        mockMvc.perform(get("/api/v1/orders/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(1)))
+                .andExpect(jsonPath("$.items[0].product.name").exists());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    /**
+     * Test that checks if a missing order is reported after one query.
+     */
+    @Test
+    void getOrderById_ShouldUseOneQuery_WhenOrderDoesNotExist() throws Exception {
+        mockMvc.perform(get("/api/v1/orders/999999"))
+                .andExpect(status().isNotFound());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Test that checks if a page of orders by paid status is read with two queries without loading entities.
+     */
+    @Test
+    void getOrdersByPaidStatus_ShouldUseTwoQueries() throws Exception {
+        mockMvc.perform(get("/api/v1/orders/status").param("paid", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].paid", is(true)));
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+}
@@ -0,0 +1,123 @@
+package com.demo.store.integration;
+
+import com.demo.store.dto.CreateOrderBatchDTO;
+import com.demo.store.dto.CreateOrderDTO;
+import com.demo.store.dto.ProductIdQuantityDTO;
+import com.demo.store.model.Product;
+import com.demo.store.service.OrderEventOutbox;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        // This context runs next to the shared one, so it needs a database and an event log of its own
+        "spring.datasource.url=jdbc:h2:mem:order-retry-it",
+        "order.events.log-dir=${java.io.tmpdir}/demo-store/order-events-order-retry-it"
+})
+@AutoConfigureMockMvc
+class OrderRetryIT {
+
+    private static final String COUNT_ITEMS = "SELECT COUNT(*) FROM order_items WHERE order_id = ?";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoSpyBean
+    private OrderEventOutbox orderEventOutbox;
+
+    /**
+     * Test that checks if an order is created when its first attempt fails with an optimistic lock conflict
+     * on commit, after the IDs of its items were assigned.
+     */
+    @Test
+    void createOrder_ShouldSucceed_WhenFirstAttemptConflicts() throws Exception {
+        failFirstAttempt();
+
+        String json = mockMvc.perform(post("/api/v1/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(orderOf(3L, 1))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.items[0].quantity", is(1)))
+                .andReturn().getResponse().getContentAsString();
+
+        long orderId = objectMapper.readTree(json).get("id").asLong();
+        verify(orderEventOutbox, times(2)).orderCreated(anyLong(), anyMap());
+        assertEquals(1, jdbcTemplate.queryForObject(COUNT_ITEMS, Integer.class, orderId));
+    }
+
+    /**
+     * Test that checks if a batch of orders is created when its first attempt fails with an optimistic lock conflict
+     * on commit, after the IDs of its items were assigned.
+     */
+    @Test
+    void createOrders_ShouldSucceed_WhenFirstAttemptConflicts() throws Exception {
+        failFirstAttempt();
+        CreateOrderBatchDTO batch = new CreateOrderBatchDTO();
+        batch.setOrders(List.of(orderOf(4L, 1), orderOf(5L, 2)));
+
+        String json = mockMvc.perform(post("/api/v1/orders/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].created", is(true)))
+                .andExpect(jsonPath("$[1].created", is(true)))
+                .andReturn().getResponse().getContentAsString();
+
+        for (int i = 0; i < 2; i++) {
+            long orderId = objectMapper.readTree(json).get(i).get("order").get("id").asLong();
+            assertEquals(1, jdbcTemplate.queryForObject(COUNT_ITEMS, Integer.class, orderId));
+        }
+    }
+
+    /**
+     * Fail the commit of the first attempt like a version conflict found on flush, after all IDs were assigned
+     */
+    private void failFirstAttempt() {
+        doAnswer(invocation -> {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    throw new ObjectOptimisticLockingFailureException(Product.class, 1L);
+                }
+            });
+            return invocation.callRealMethod();
+        }).doCallRealMethod().when(orderEventOutbox).orderCreated(anyLong(), anyMap());
+    }
+
+    private CreateOrderDTO orderOf(Long productId, int quantity) {
+        ProductIdQuantityDTO item = new ProductIdQuantityDTO();
+        item.setProductId(productId);
+        item.setQuantity(quantity);
+        CreateOrderDTO order = new CreateOrderDTO();
+        order.setItems(List.of(item));
+        return order;
+    }
+}
@@ -1,20 +1,26 @@
 package com.demo.store.integration;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.demo.store.cache.ProductCache;
 import com.demo.store.dto.CreateProductDTO;
 import com.demo.store.dto.UpdateProductDTO;
 import com.demo.store.repository.ProductRepository;
+import com.demo.store.service.ProductImportService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -32,6 +38,12 @@ class ProductControllerIT {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private ProductCache productCache;
+
     @Test
     void getAllProducts_ShouldReturnProducts() throws Exception {
         mockMvc.perform(get("/api/v1/products"))
@@ -39,6 +51,44 @@ class ProductControllerIT {
                 .andExpect(jsonPath("$.length()", greaterThan(0)));
     }
 
+    @Test
+    void getAllProducts_ShouldReturnNotModified_WhenETagMatches() throws Exception {
+        String eTag = mockMvc.perform(get("/api/v1/products"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/v1/products").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        // Without a cached catalog the ETag comes from aggregates of the products table
+        productCache.evictCatalogAfterCommit();
+        mockMvc.perform(get("/api/v1/products").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void getProductById_ShouldReturnNotModified_UntilProductChanges() throws Exception {
+        String eTag = mockMvc.perform(get("/api/v1/products/2"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/v1/products/2").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+
+        UpdateProductDTO dto = new UpdateProductDTO();
+        dto.setPrice(BigDecimal.valueOf(21.90));
+        mockMvc.perform(put("/api/v1/products/2")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/v1/products/2").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(eTag)));
+    }
+
     @Test
     void getProductById_ShouldReturnProduct_WhenProductExists() throws Exception {
         mockMvc.perform(get("/api/v1/products/1"))
@@ -66,6 +116,168 @@ class ProductControllerIT {
                 .andExpect(jsonPath("$.id").exists());
     }
 
+    /**
+     * Test that checks if products are found by name without diacritics,
+     * including a product created after startup.
+     */
+    @Test
+    void searchProducts_ShouldIgnoreDiacritics() throws Exception {
+        mockMvc.perform(get("/api/v1/products/search").param("q", "ryze horka"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)))
+                .andExpect(jsonPath("$[0].id", is(3)))
+                .andExpect(jsonPath("$[0].name", is("Radegast Ryze hořká 12")));
+
+        CreateProductDTO newProduct = new CreateProductDTO();
+        newProduct.setName("Žatecký Světlý Ležák");
+        newProduct.setPrice(BigDecimal.valueOf(24.9));
+        newProduct.setStockQuantity(10);
+        mockMvc.perform(post("/api/v1/products")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(newProduct)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/api/v1/products/search").param("q", "ZATECKY"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)))
+                .andExpect(jsonPath("$[0].name", is("Žatecký Světlý Ležák")));
+
+        mockMvc.perform(get("/api/v1/products/search").param("q", "lezak").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test that checks if a CSV import inserts new products, counts a repeated name as a duplicate,
+     * rejects invalid rows with their line and if a following NDJSON import updates the product with the same name.
+     */
+    @Test
+    void importProducts_ShouldUpsertByNameAndReportRejectedRows() throws Exception {
+        String csv = """
+                name,price,stockQuantity
+                Import Test Lager,21.50,40
+                "Import Test, Dark",22.00,15
+                Import Test Bad,-1,10
+                Import Test Broken,abc,10
+                Import Test Lager,21.90,45
+                """;
+        mockMvc.perform(post("/api/v1/products/import")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inserted", is(2)))
+                .andExpect(jsonPath("$.updated", is(0)))
+                .andExpect(jsonPath("$.duplicates", is(1)))
+                .andExpect(jsonPath("$.rejected", is(2)))
+                .andExpect(jsonPath("$.errors[0].line", is(4)))
+                .andExpect(jsonPath("$.errors[1].line", is(5)));
+        assertEquals(0, new BigDecimal("21.90").compareTo(productRepository.findByName("Import Test Lager").getPrice()));
+        assertEquals(15, productRepository.findByName("Import Test, Dark").getStockQuantity());
+
+        String ndjson = """
+                {"name":"Import Test Lager","price":19.90,"stockQuantity":50}
+                {"name":"Import Test Pale","price":10.00,"stockQuantity":1}
+                not json
+                """;
+        mockMvc.perform(post("/api/v1/products/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inserted", is(1)))
+                .andExpect(jsonPath("$.updated", is(1)))
+                .andExpect(jsonPath("$.rejected", is(1)))
+                .andExpect(jsonPath("$.errors[0].line", is(3)));
+        assertEquals(50, productRepository.findByName("Import Test Lager").getStockQuantity());
+
+        mockMvc.perform(get("/api/v1/products/search").param("q", "import test"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(3)));
+
+        mockMvc.perform(post("/api/v1/products/import")
+                        .contentType("text/csv")
+                        .content("title,cost\nSomething,1\n"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test that checks if a batch that cannot be saved is rejected with the lines of its rows,
+     * while the batches before and after it are imported.
+     */
+    @Test
+    void importProducts_ShouldRejectFailedBatchAndImportTheOthers() throws Exception {
+        // Longer than the name column, so the insert of the second batch fails in the database
+        String tooLong = "Import Batch " + "x".repeat(300);
+        String csv = """
+                name,price,stockQuantity
+                Import Batch A,10.00,1
+                Import Batch B,10.00,1
+                Import Batch C,10.00,1
+                %s,10.00,1
+                Import Batch D,10.00,1
+                """.formatted(tooLong);
+        ReflectionTestUtils.setField(productImportService, "batchSize", 2);
+        try {
+            mockMvc.perform(post("/api/v1/products/import")
+                            .contentType("text/csv")
+                            .content(csv))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.inserted", is(3)))
+                    .andExpect(jsonPath("$.rejected", is(2)))
+                    .andExpect(jsonPath("$.errors[0].line", is(4)))
+                    .andExpect(jsonPath("$.errors[1].line", is(5)));
+        } finally {
+            ReflectionTestUtils.setField(productImportService, "batchSize", 1000);
+        }
+        assertEquals(1, productRepository.findByName("Import Batch D").getStockQuantity());
+        assertNull(productRepository.findByName("Import Batch C"));
+    }
+
+    /**
+     * Test that checks if bulk stock adjustments are applied in request order,
+     * with the ones that would drop stock below zero or target an unknown product reported as conflicts.
+     */
+    @Test
+    void adjustStock_ShouldApplyInOrderAndReportConflicts() throws Exception {
+        CreateProductDTO product = new CreateProductDTO();
+        product.setName("Stock Sync Test");
+        product.setPrice(new BigDecimal("10.00"));
+        product.setStockQuantity(10);
+        String json = mockMvc.perform(post("/api/v1/products")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(product)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long id = objectMapper.readTree(json).get("id").asLong();
+        mockMvc.perform(get("/api/v1/products/" + id))
+                .andExpect(jsonPath("$.stockQuantity", is(10)));
+
+        String adjustments = """
+                {"adjustments": [
+                    {"productId": %1$d, "delta": -3},
+                    {"productId": %1$d, "delta": -20},
+                    {"productId": %1$d, "absolute": 50},
+                    {"productId": %1$d, "delta": 5},
+                    {"productId": 999999, "delta": 1},
+                    {"productId": %1$d, "delta": 1, "absolute": 1}
+                ]}
+                """.formatted(id);
+        mockMvc.perform(patch("/api/v1/products/stock")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(adjustments))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied", is(3)))
+                .andExpect(jsonPath("$.conflicts[*].index", contains(1, 4, 5)))
+                .andExpect(jsonPath("$.conflicts[0].reason", is("Insufficient stock")));
+
+        mockMvc.perform(get("/api/v1/products/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.stockQuantity", is(55)));
+
+        mockMvc.perform(patch("/api/v1/products/stock")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"adjustments\": [{\"productId\": 1, \"absolute\": -1}]}"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void createProduct_ShouldFail_WhenDataIsInvalid() throws Exception {
         CreateProductDTO newProduct = new CreateProductDTO();
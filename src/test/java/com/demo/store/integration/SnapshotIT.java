@@ -0,0 +1,84 @@
+package com.demo.store.integration;
+
+import com.demo.store.snapshot.StoreSnapshotService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        // A database of its own, so emptying the tables does not affect the shared context
+        "spring.datasource.url=jdbc:h2:mem:snapshotdb",
+        "order.events.log-dir=${java.io.tmpdir}/demo-store/order-events-snapshot-it",
+        "store.snapshot.dir=${java.io.tmpdir}/demo-store/snapshots-it-${random.uuid}"
+})
+@ActiveProfiles("snapshot")
+class SnapshotIT {
+
+    private static final String SELECT_PRODUCTS = "SELECT * FROM products ORDER BY id";
+    private static final String SELECT_ORDERS = "SELECT * FROM orders ORDER BY id";
+    private static final String SELECT_ORDER_ITEMS = "SELECT * FROM order_items ORDER BY id";
+    private static final String SELECT_IDEMPOTENCY_KEYS = "SELECT * FROM idempotency_keys ORDER BY idempotency_key";
+    private static final String SELECT_ORDER_OUTBOX = "SELECT * FROM order_outbox ORDER BY id";
+    private static final String SELECT_STOCK = "SELECT stock FROM products WHERE id = 1";
+
+    @Autowired
+    private StoreSnapshotService storeSnapshotService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Test that checks if the tables seeded without a snapshot are restored unchanged from a snapshot,
+     * with journaled stock changes applied to the stock, and that new IDs continue after the restored ones.
+     */
+    @Test
+    void restore_ShouldLoadTheTablesOfTheLatestSnapshot() throws Exception {
+        List<Map<String, Object>> products = jdbcTemplate.queryForList(SELECT_PRODUCTS);
+        List<Map<String, Object>> orders = jdbcTemplate.queryForList(SELECT_ORDERS);
+        List<Map<String, Object>> orderItems = jdbcTemplate.queryForList(SELECT_ORDER_ITEMS);
+        assertEquals(5, products.size());
+
+        jdbcTemplate.update("INSERT INTO idempotency_keys (idempotency_key, request_hash, response, created_at) " +
+                "VALUES ('snapshot-key', 'hash', '{\"id\":1}', CURRENT_TIMESTAMP)");
+        jdbcTemplate.update("INSERT INTO order_outbox (id, order_id, type, occurred_at, items) " +
+                "VALUES (1, 1, 'PAID', CURRENT_TIMESTAMP, NULL)");
+        List<Map<String, Object>> idempotencyKeys = jdbcTemplate.queryForList(SELECT_IDEMPOTENCY_KEYS);
+        List<Map<String, Object>> outbox = jdbcTemplate.queryForList(SELECT_ORDER_OUTBOX);
+        // A reservation the inventory ledger has journaled but not written behind yet
+        Integer stock = jdbcTemplate.queryForObject(SELECT_STOCK, Integer.class);
+        jdbcTemplate.update("INSERT INTO stock_journal (id, product_id, delta) VALUES (1, 1, -2)");
+
+        Path file = storeSnapshotService.writeSnapshot().orElseThrow();
+        assertEquals(file, storeSnapshotService.latest().orElseThrow());
+
+        jdbcTemplate.update("DELETE FROM stock_journal");
+        jdbcTemplate.update("DELETE FROM order_outbox");
+        jdbcTemplate.update("DELETE FROM idempotency_keys");
+        jdbcTemplate.update("DELETE FROM order_items");
+        jdbcTemplate.update("DELETE FROM orders");
+        jdbcTemplate.update("DELETE FROM products");
+        storeSnapshotService.restore(file);
+
+        assertEquals(stock - 2, jdbcTemplate.queryForObject(SELECT_STOCK, Integer.class));
+        jdbcTemplate.update("UPDATE products SET stock = ? WHERE id = 1", stock);
+        assertEquals(products, jdbcTemplate.queryForList(SELECT_PRODUCTS));
+        assertEquals(orders, jdbcTemplate.queryForList(SELECT_ORDERS));
+        assertEquals(orderItems, jdbcTemplate.queryForList(SELECT_ORDER_ITEMS));
+        assertEquals(idempotencyKeys, jdbcTemplate.queryForList(SELECT_IDEMPOTENCY_KEYS));
+        assertEquals(outbox, jdbcTemplate.queryForList(SELECT_ORDER_OUTBOX));
+
+        jdbcTemplate.update("INSERT INTO products (name, price, stock, version) VALUES ('Bernard 12', 21.90, 5, 0)");
+        assertEquals(6L, jdbcTemplate.queryForObject("SELECT MAX(id) FROM products", Long.class));
+        Long nextOrderId = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR orders_seq", Long.class);
+        assertTrue(nextOrderId - 49 > 2, "The next block of order IDs must start after the restored orders");
+    }
+}
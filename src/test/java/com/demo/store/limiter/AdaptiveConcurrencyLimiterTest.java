@@ -0,0 +1,81 @@
+package com.demo.store.limiter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MS = 1_000_000;
+
+    private final AtomicLong clock = new AtomicLong();
+    private SimpleMeterRegistry meterRegistry;
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new AdaptiveConcurrencyLimiter(meterRegistry, clock::get, 4, 2, 8, 1.5, 1.0, 2, 3);
+    }
+
+    /**
+     * Requests past the limit are rejected at once and counted; a released permit makes room again
+     */
+    @Test
+    void tryAcquire_ShouldRejectRequestsPastTheLimit() {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = acquire(4);
+
+        assertNull(limiter.tryAcquire());
+        assertEquals(1.0, meterRegistry.get("store.orders.limiter.rejected").counter().count());
+        assertEquals(4.0, meterRegistry.get("store.orders.limiter.in_flight").gauge().value());
+
+        clock.addAndGet(10 * MS);
+        limiter.release(permits.get(0));
+        assertNotNull(limiter.tryAcquire());
+    }
+
+    /**
+     * The limit grows while latency is steady, shrinks when latency rises and stays put while it is not in use
+     */
+    @Test
+    void release_ShouldFollowTheLatencyGradient() {
+        // 4 -> 4 + sqrt(4) = 6 -> 6 + sqrt(6), capped
+        runWindows(4, 10);
+        runWindows(4, 10);
+        assertEquals(8.0, limiter.getLimit(), 1e-9, "The limit never grows past max-limit");
+        assertEquals(8.0, meterRegistry.get("store.orders.limiter.limit").gauge().value(), 1e-9);
+
+        runWindows(4, 100);
+        double loweredLimit = limiter.getLimit();
+        assertTrue(loweredLimit < 8.0, "A latency spike lowers the limit");
+        assertTrue(loweredLimit >= 2.0);
+
+        runWindows(1, 100);
+        assertEquals(loweredLimit, limiter.getLimit(), 1e-9, "Windows without load leave the limit unchanged");
+    }
+
+    /**
+     * Run requests that all take the same time, two windows' worth
+     */
+    private void runWindows(int concurrency, long latencyMs) {
+        for (int round = 0; round < 4 / concurrency; round++) {
+            List<AdaptiveConcurrencyLimiter.Permit> permits = acquire(concurrency);
+            clock.addAndGet(latencyMs * MS);
+            permits.forEach(limiter::release);
+        }
+    }
+
+    private List<AdaptiveConcurrencyLimiter.Permit> acquire(int count) {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            permits.add(limiter.tryAcquire());
+        }
+        return permits;
+    }
+}
@@ -0,0 +1,131 @@
+package com.demo.store.search;
+
+import com.demo.store.dto.ProductNameDTO;
+import com.demo.store.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductSearchIndexTest {
+
+    private ProductSearchIndex productSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        productSearchIndex = new ProductSearchIndex(null, 1000);
+        productSearchIndex.put(1L, "Pilsner Urquell světlý ležák");
+        productSearchIndex.put(2L, "Velkopopovický Kozel 11");
+        productSearchIndex.put(3L, "Radegast Ryze hořká 12");
+        productSearchIndex.put(4L, "Kozel");
+    }
+
+    /**
+     * Names are matched without case and diacritics, on both sides
+     */
+    @Test
+    void search_ShouldIgnoreCaseAndDiacritics() {
+        assertEquals(List.of(3L), ids(productSearchIndex.search("HORKA", 10)));
+        assertEquals(List.of(2L), ids(productSearchIndex.search("velkopopovicky", 10)));
+        assertEquals(List.of(1L), ids(productSearchIndex.search("Ležák", 10)));
+    }
+
+    /**
+     * Whole names rank before name prefixes, word prefixes and substrings
+     */
+    @Test
+    void search_ShouldRankWholeNameAndPrefixesFirst() {
+        productSearchIndex.put(5L, "Kozelka");
+        productSearchIndex.put(6L, "Bezkozelny");
+
+        assertEquals(List.of(4L, 5L, 2L, 6L), ids(productSearchIndex.search("kozel", 10)));
+        assertEquals(List.of(4L, 5L), ids(productSearchIndex.search("kozel", 2)));
+    }
+
+    /**
+     * Short queries match word prefixes only
+     */
+    @Test
+    void search_ShouldMatchWordPrefixes_WhenQueryIsShort() {
+        assertEquals(List.of(3L, 2L), ids(productSearchIndex.search("1", 10)));
+        assertEquals(List.of(3L), ids(productSearchIndex.search("ry", 10)));
+        assertTrue(productSearchIndex.search("yz", 10).isEmpty());
+    }
+
+    /**
+     * Renamed and removed products are no longer found by their old name
+     */
+    @Test
+    void search_ShouldFollowUpdatesAndRemovals() {
+        productSearchIndex.put(2L, "Gambrinus 10");
+        productSearchIndex.remove(4L);
+
+        assertTrue(productSearchIndex.search("kozel", 10).isEmpty());
+        assertEquals(List.of(new ProductNameDTO(2L, "Gambrinus 10")), productSearchIndex.search("gambr", 10));
+        assertEquals(3, productSearchIndex.size());
+    }
+
+    /**
+     * Names sharing only some trigrams with the query do not count against max-candidates
+     */
+    @Test
+    void search_ShouldFindMatches_WhenMoreNamesThanMaxCandidatesShareATrigram() {
+        ProductSearchIndex smallIndex = new ProductSearchIndex(null, 10);
+        long id = 100;
+        for (String prefix : List.of("Koz", "Oze", "Zel")) {
+            for (int i = 0; i < 50; i++) {
+                smallIndex.put(id++, prefix + " " + i);
+            }
+        }
+        smallIndex.put(4L, "Kozel");
+        smallIndex.put(2L, "Velkopopovický Kozel 11");
+
+        assertEquals(List.of(4L, 2L), ids(smallIndex.search("kozel", 10)));
+    }
+
+    /**
+     * Names starting with the query are checked before substring matches fill max-candidates
+     */
+    @Test
+    void search_ShouldFindPrefixMatches_WhenMoreSubstringMatchesThanMaxCandidates() {
+        ProductSearchIndex smallIndex = new ProductSearchIndex(null, 10);
+        for (long id = 100; id < 150; id++) {
+            smallIndex.put(id, "Bezkozel " + id);
+        }
+        smallIndex.put(4L, "Kozel");
+        smallIndex.put(2L, "Velkopopovický Kozel 11");
+
+        assertEquals(List.of(4L, 2L), ids(smallIndex.search("kozel", 2)));
+    }
+
+    /**
+     * Seeding keeps names indexed meanwhile and does not bring back removed products
+     */
+    @Test
+    void seed_ShouldKeepNamesIndexedMeanwhile() {
+        ProductRepository productRepository = mock(ProductRepository.class);
+        ProductSearchIndex seededIndex = new ProductSearchIndex(productRepository, 1000);
+        seededIndex.put(2L, "Gambrinus 10");
+        when(productRepository.findAllNames()).thenAnswer(invocation -> {
+            seededIndex.remove(4L);
+            return List.of(new ProductNameDTO(2L, "Velkopopovický Kozel 11"),
+                    new ProductNameDTO(3L, "Radegast Ryze hořká 12"),
+                    new ProductNameDTO(4L, "Kozel"));
+        });
+
+        seededIndex.seed();
+
+        assertEquals(List.of(2L), ids(seededIndex.search("gambr", 10)));
+        assertTrue(seededIndex.search("kozel", 10).isEmpty());
+        assertEquals(List.of(3L), ids(seededIndex.search("horka", 10)));
+        assertEquals(2, seededIndex.size());
+    }
+
+    private static List<Long> ids(List<ProductNameDTO> products) {
+        return products.stream().map(ProductNameDTO::id).toList();
+    }
+}
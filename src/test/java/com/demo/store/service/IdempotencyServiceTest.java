@@ -0,0 +1,146 @@
+package com.demo.store.service;
+
+import com.demo.store.exception.IdempotencyConflictException;
+import com.demo.store.metrics.OrderMetrics;
+import com.demo.store.model.IdempotencyKey;
+import com.demo.store.repository.IdempotencyKeyRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private OrderMetrics orderMetrics;
+
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(idempotencyKeyRepository, jdbcTemplate, new ObjectMapper(),
+                orderMetrics, new SimpleMeterRegistry(), 100, 60, 5000);
+        when(idempotencyKeyRepository.findById(anyString())).thenReturn(Optional.empty());
+    }
+
+    /**
+     * A duplicate that arrives while the first request is running waits for it instead of running the action again
+     */
+    @Test
+    void execute_ShouldRunActionOnce_WhenDuplicatesAreConcurrent() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<IdempotentResult<Map>> first = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("key-1", List.of(1), Map.class, storeResponse -> {
+                    calls.incrementAndGet();
+                    started.countDown();
+                    await(release);
+                    return stored(storeResponse, Map.of("id", 7));
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<IdempotentResult<Map>> second = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("key-1", List.of(1), Map.class, storeResponse -> {
+                    calls.incrementAndGet();
+                    return stored(storeResponse, Map.of("id", 8));
+                }));
+        Thread.sleep(50);
+        assertFalse(second.isDone());
+        release.countDown();
+
+        assertFalse(first.get(5, TimeUnit.SECONDS).replayed());
+        assertTrue(second.get(5, TimeUnit.SECONDS).replayed());
+        assertEquals(7, second.get().value().get("id"));
+        assertEquals(1, calls.get());
+    }
+
+    /**
+     * A key is bound to the request it was first used with
+     */
+    @Test
+    void execute_ShouldThrowException_WhenKeyIsReusedForDifferentRequest() {
+        idempotencyService.execute("key-2", List.of(1), Map.class, storeResponse -> stored(storeResponse, Map.of("id", 7)));
+
+        assertThrows(IdempotencyConflictException.class, () -> idempotencyService.execute("key-2", List.of(2), Map.class,
+                storeResponse -> stored(storeResponse, Map.of("id", 8))));
+    }
+
+    /**
+     * A failed request stores nothing, so a retry runs the action again
+     */
+    @Test
+    void execute_ShouldRunActionAgain_WhenActionFails() {
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute("key-3", List.of(1), Map.class, storeResponse -> {
+            throw new IllegalStateException("Cannot cancel an order that has already been paid");
+        }));
+        verifyNoInteractions(jdbcTemplate);
+
+        IdempotentResult<Map> retried = idempotencyService.execute("key-3", List.of(1), Map.class,
+                storeResponse -> stored(storeResponse, Map.of("id", 9)));
+        assertFalse(retried.replayed());
+        verify(jdbcTemplate).update(startsWith("INSERT INTO idempotency_keys"), eq("key-3"), anyString(), eq("{\"id\":9}"), any());
+    }
+
+    /**
+     * A request whose key was stored by another instance in the meantime gets that instance's response
+     */
+    @Test
+    void execute_ShouldReplayStoredResponse_WhenAnotherInstanceStoredTheKey() {
+        idempotencyService.execute("key-4", List.of(1), Map.class, storeResponse -> stored(storeResponse, Map.of("id", 7)));
+        ArgumentCaptor<String> requestHash = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).update(startsWith("INSERT INTO idempotency_keys"), eq("key-4"), requestHash.capture(), anyString(), any());
+        IdempotencyService otherInstance = new IdempotencyService(idempotencyKeyRepository, jdbcTemplate, new ObjectMapper(),
+                orderMetrics, new SimpleMeterRegistry(), 100, 60, 5000);
+        when(jdbcTemplate.update(startsWith("INSERT INTO idempotency_keys"), eq("key-4"), anyString(), anyString(), any()))
+                .thenThrow(new DuplicateKeyException("key-4"));
+        when(idempotencyKeyRepository.findById("key-4")).thenReturn(Optional.empty())
+                .thenReturn(Optional.of(new IdempotencyKey("key-4", requestHash.getValue(), "{\"id\":7}", LocalDateTime.now())));
+
+        IdempotentResult<Map> second = otherInstance.execute("key-4", List.of(1), Map.class,
+                storeResponse -> stored(storeResponse, Map.of("id", 8)));
+
+        assertTrue(second.replayed());
+        assertEquals(7, second.value().get("id"));
+    }
+
+    private static <T> T stored(Consumer<T> storeResponse, T response) {
+        storeResponse.accept(response);
+        return response;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
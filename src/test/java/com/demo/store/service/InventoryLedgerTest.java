@@ -0,0 +1,184 @@
+package com.demo.store.service;
+
+import com.demo.store.cache.ProductCache;
+import com.demo.store.exception.NotFoundException;
+import com.demo.store.model.StockJournalEntry;
+import com.demo.store.repository.StockJournalRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryLedgerTest {
+
+    @Mock
+    private StockJournalRepository stockJournalRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ProductCache productCache;
+
+    @InjectMocks
+    private InventoryLedger inventoryLedger;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(inventoryLedger, "stockReservationMode", StockReservationMode.IN_MEMORY);
+        // Stock column already includes the journaled deltas
+        returnRows("SELECT p.id", new Object[]{1L, 10}, new Object[]{2L, 3});
+        inventoryLedger.seed();
+    }
+
+    /**
+     * Reservation of the whole basket when there is enough stock
+     */
+    @Test
+    void reserve_ShouldTakeStock_WhenEnoughIsAvailable() {
+        Optional<Long> shortProductId = inventoryLedger.reserve(Map.of(1L, 4, 2L, 3));
+
+        assertTrue(shortProductId.isEmpty());
+        assertEquals(6, inventoryLedger.getAvailable(1L));
+        assertEquals(0, inventoryLedger.getAvailable(2L));
+        verify(stockJournalRepository, times(1)).saveAll(argThat((List<StockJournalEntry> entries) ->
+                entries.size() == 2
+                        && entries.contains(new StockJournalEntry(null, 1L, -4))
+                        && entries.contains(new StockJournalEntry(null, 2L, -3))));
+    }
+
+    /**
+     * Adjustments apply right away, so later ones see earlier ones; none may drop stock below zero
+     */
+    @Test
+    void adjust_ShouldApplyInOrder_AndKeepStockNonNegative() {
+        inventoryLedger.adjustTo(2L, 7);
+
+        assertTrue(inventoryLedger.adjust(2L, -5));
+        assertFalse(inventoryLedger.adjust(2L, -5));
+        assertTrue(inventoryLedger.adjust(2L, 1));
+        assertEquals(3, inventoryLedger.getAvailable(2L));
+    }
+
+    /**
+     * Reservation is all-or-nothing: a short product gives back what was already taken
+     */
+    @Test
+    void reserve_ShouldTakeNothing_WhenOneProductIsShort() {
+        Map<Long, Integer> requested = new LinkedHashMap<>();
+        requested.put(1L, 4);
+        requested.put(2L, 5);
+
+        Optional<Long> shortProductId = inventoryLedger.reserve(requested);
+
+        assertEquals(Optional.of(2L), shortProductId);
+        assertEquals(10, inventoryLedger.getAvailable(1L));
+        assertEquals(3, inventoryLedger.getAvailable(2L));
+        verifyNoInteractions(stockJournalRepository);
+    }
+
+    /**
+     * Unknown products are loaded from the database on first use
+     */
+    @Test
+    void reserve_ShouldThrowException_WhenProductDoesNotExist() {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(99L))).thenReturn(List.of());
+
+        assertThrows(NotFoundException.class, () -> inventoryLedger.reserve(Map.of(99L, 1)));
+    }
+
+    /**
+     * Seeding keeps counters that are already in use, so reservations made meanwhile are not handed out again
+     */
+    @Test
+    void seed_ShouldKeepCountersInUse() {
+        inventoryLedger.reserve(Map.of(1L, 4));
+
+        inventoryLedger.seed();
+
+        assertEquals(6, inventoryLedger.getAvailable(1L));
+        assertEquals(3, inventoryLedger.getAvailable(2L));
+    }
+
+    /**
+     * Journaled changes are applied to the database as net deltas in one batch and deleted
+     */
+    @Test
+    void flush_ShouldApplyNetDeltas_AndDeleteJournal() {
+        runTransactions();
+        returnRows("SELECT id",
+                new Object[]{1L, 1L, -4}, new Object[]{2L, 1L, 1}, new Object[]{3L, 2L, 4}, new Object[]{4L, 2L, -4});
+
+        inventoryLedger.flush();
+
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith("UPDATE"), argThat((List<Object[]> batch) ->
+                batch.size() == 1 && batch.get(0)[0].equals(-3) && batch.get(0)[1].equals(1L)));
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith("DELETE"), argThat((List<Object[]> batch) ->
+                batch.size() == 4));
+    }
+
+    /**
+     * The journal is not queried again until a transaction has changed stock
+     */
+    @Test
+    void flush_ShouldDoNothing_WhenNoChangeWasCommitted() {
+        runTransactions();
+        inventoryLedger.flush();
+        clearInvocations(jdbcTemplate, transactionTemplate);
+
+        inventoryLedger.flush();
+
+        verifyNoInteractions(jdbcTemplate, transactionTemplate);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runTransactions() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+    }
+
+    private void returnRows(String sqlPrefix, Object[]... rows) {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Object[] row : rows) {
+                handler.processRow(resultSet(row));
+            }
+            return null;
+        }).when(jdbcTemplate).query(startsWith(sqlPrefix), any(RowCallbackHandler.class));
+    }
+
+    private static ResultSet resultSet(Object[] row) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        for (int i = 0; i < row.length; i++) {
+            if (row[i] instanceof Long value) {
+                lenient().when(rs.getLong(i + 1)).thenReturn(value);
+            } else {
+                lenient().when(rs.getInt(i + 1)).thenReturn((Integer) row[i]);
+            }
+        }
+        return rs;
+    }
+}
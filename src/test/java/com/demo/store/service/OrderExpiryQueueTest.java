@@ -0,0 +1,63 @@
+package com.demo.store.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderExpiryQueueTest {
+
+    private OrderExpiryQueue orderExpiryQueue;
+
+    @BeforeEach
+    void setUp() {
+        orderExpiryQueue = new OrderExpiryQueue();
+        ReflectionTestUtils.setField(orderExpiryQueue, "orderExpirationTime", 30);
+    }
+
+    /**
+     * Only orders past their deadline are due, earliest first
+     */
+    @Test
+    void takeDue_ShouldReturnExpiredOrders() throws InterruptedException {
+        orderExpiryQueue.schedule(1L, LocalDateTime.now().minusMinutes(31));
+        orderExpiryQueue.schedule(2L, LocalDateTime.now().minusMinutes(40));
+        orderExpiryQueue.schedule(3L, LocalDateTime.now());
+
+        assertEquals(List.of(2L, 1L), orderExpiryQueue.takeDue(10));
+        assertEquals(1, orderExpiryQueue.size());
+    }
+
+    /**
+     * Removed orders are never returned, rescheduled orders only at their new deadline
+     */
+    @Test
+    void takeDue_ShouldSkipRemovedAndRescheduledOrders() throws InterruptedException {
+        orderExpiryQueue.schedule(1L, LocalDateTime.now().minusMinutes(31));
+        orderExpiryQueue.schedule(2L, LocalDateTime.now().minusMinutes(31));
+        orderExpiryQueue.schedule(3L, LocalDateTime.now().minusMinutes(31));
+        orderExpiryQueue.removeAfterCommit(1L);
+        orderExpiryQueue.postpone(List.of(2L), Duration.ofMinutes(5));
+
+        assertEquals(List.of(3L), orderExpiryQueue.takeDue(10));
+        assertEquals(1, orderExpiryQueue.size());
+    }
+
+    /**
+     * At most max orders are taken at once
+     */
+    @Test
+    void takeDue_ShouldRespectMax() throws InterruptedException {
+        for (long id = 1; id <= 5; id++) {
+            orderExpiryQueue.schedule(id, LocalDateTime.now().minusMinutes(31));
+        }
+
+        assertEquals(2, orderExpiryQueue.takeDue(2).size());
+        assertEquals(3, orderExpiryQueue.size());
+    }
+}
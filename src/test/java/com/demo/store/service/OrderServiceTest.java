@@ -1,7 +1,11 @@
 package com.demo.store.service;
 
+import com.demo.store.cache.ProductCache;
+import com.demo.store.dto.OrderLineDTO;
+import com.demo.store.dto.ProductQuantityTotalDTO;
 import com.demo.store.exception.InsufficientStockException;
 import com.demo.store.exception.NotFoundException;
+import com.demo.store.metrics.OrderMetrics;
 import com.demo.store.model.Order;
 import com.demo.store.model.OrderExtra;
 import com.demo.store.model.OrderProduct;
@@ -16,11 +20,18 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -28,6 +39,8 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class OrderServiceTest {
 
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2025, 1, 1, 12, 0);
+
     @Mock
     private OrderRepository orderRepository;
 
@@ -40,6 +53,30 @@ class OrderServiceTest {
     @Mock
     private OrderProductRepository orderProductRepository;
 
+    @Mock
+    private InventoryLedger inventoryLedger;
+
+    @Mock
+    private ProductCache productCache;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private OrderExpiryQueue orderExpiryQueue;
+
+    @Mock
+    private OrderMetrics orderMetrics;
+
+    @Mock
+    private TransactionalRetry transactionalRetry;
+
+    @Mock
+    private OrderEventOutbox orderEventOutbox;
+
+    @Mock
+    private SalesRollupService salesRollupService;
+
     @InjectMocks
     private OrderService orderService;
 
@@ -51,6 +88,9 @@ class OrderServiceTest {
 
     @BeforeEach
     void setUp() {
+        lenient().when(transactionalRetry.execute(anyString(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+
         product = new Product();
         product.setId(1L);
         product.setName("Test Product");
@@ -73,16 +113,21 @@ class OrderServiceTest {
      */
     @Test
     void createOrder_ShouldSucceed_WhenStockIsAvailable() {
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productRepository.findAllById(any())).thenReturn(List.of(product));
         when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(orderProductRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
 
         OrderExtra createdOrder = orderService.createOrder(order, items);
 
         assertNotNull(createdOrder);
         assertEquals(5, product.getStockQuantity()); // Было 10, заказали 5 → осталось 5
         verify(orderRepository, times(1)).save(any(Order.class));
-        verify(productRepository, times(1)).save(any(Product.class));
+        verify(productRepository, times(1)).findAllById(any());
+        verify(productRepository, times(1)).saveAll(anyCollection());
+        verify(orderProductRepository, times(1)).saveAll(copiesOf(items));
+        // Items keep the price they were sold at
+        verify(salesRollupService, times(1)).orderCreated(any(), eq(false), argThat((List<OrderProduct> created) ->
+                created.size() == 1 && created.get(0).getQuantity() == 5
+                        && BigDecimal.valueOf(19.99).equals(created.get(0).getPrice())));
     }
 
     /**
@@ -90,12 +135,12 @@ class OrderServiceTest {
      */
     @Test
     void createOrder_ShouldThrowException_WhenProductNotFound() {
-        when(productRepository.findById(1L)).thenReturn(Optional.empty());
+        when(productRepository.findAllById(any())).thenReturn(Collections.emptyList());
 
         assertThrows(NotFoundException.class, () -> orderService.createOrder(order, items));
 
         verify(orderRepository, times(1)).save(any(Order.class));
-        verify(orderProductRepository, never()).save(any(OrderProduct.class));
+        verify(orderProductRepository, never()).saveAll(anyList());
     }
 
     /**
@@ -105,12 +150,98 @@ class OrderServiceTest {
     void createOrder_ShouldThrowException_WhenStockIsInsufficient() {
         product.setStockQuantity(2); // Reduce the stock balance from 10 to 2
 
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productRepository.findAllById(any())).thenReturn(List.of(product));
 
         InsufficientStockException exception = assertThrows(InsufficientStockException.class, () -> orderService.createOrder(order, items));
         assertTrue(exception.getMessage().contains("Insufficient stock"));
 
-        verify(orderProductRepository, never()).save(any(OrderProduct.class));
+        assertEquals(2, product.getStockQuantity());
+        verify(productRepository, never()).saveAll(anyCollection());
+        verify(orderProductRepository, never()).saveAll(anyList());
+        verify(orderMetrics).insufficientStock();
+    }
+
+    /**
+     * Same product listed twice in a basket is reserved with its total quantity
+     */
+    @Test
+    void createOrder_ShouldAggregateQuantities_WhenProductIsRepeated() {
+        OrderProduct sameProduct = new OrderProduct();
+        sameProduct.setProduct(product);
+        sameProduct.setQuantity(4);
+        List<OrderProduct> basket = List.of(orderProduct, sameProduct);
+
+        when(productRepository.findAllById(any())).thenReturn(List.of(product));
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        orderService.createOrder(order, basket);
+
+        assertEquals(1, product.getStockQuantity()); // 10 - (5 + 4)
+        verify(orderProductRepository, times(1)).saveAll(copiesOf(basket));
+    }
+
+    /**
+     * Order creation test in atomic reservation mode
+     */
+    @Test
+    void createOrder_ShouldUseGuardedUpdate_WhenAtomicModeIsSelected() {
+        ReflectionTestUtils.setField(orderService, "stockReservationMode", StockReservationMode.ATOMIC);
+        when(productRepository.decrementStock(1L, 5)).thenReturn(1);
+        when(productRepository.findAllById(any())).thenReturn(List.of(product));
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        OrderExtra createdOrder = orderService.createOrder(order, items);
+
+        assertNotNull(createdOrder);
+        verify(productRepository, times(1)).decrementStock(1L, 5);
+        verify(productRepository, never()).saveAll(anyCollection());
+        verify(orderProductRepository, times(1)).saveAll(copiesOf(items));
+    }
+
+    /**
+     * Try to create order in atomic reservation mode, when the guarded update matches no row
+     */
+    @Test
+    void createOrder_ShouldThrowException_WhenAtomicDecrementUpdatesNothing() {
+        ReflectionTestUtils.setField(orderService, "stockReservationMode", StockReservationMode.ATOMIC);
+        product.setStockQuantity(2);
+        when(productRepository.decrementStock(1L, 5)).thenReturn(0);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+
+        assertThrows(InsufficientStockException.class, () -> orderService.createOrder(order, items));
+
+        verify(orderProductRepository, never()).saveAll(anyList());
+    }
+
+    /**
+     * Order creation test in in-memory reservation mode
+     */
+    @Test
+    void createOrder_ShouldReserveInLedger_WhenInMemoryModeIsSelected() {
+        ReflectionTestUtils.setField(orderService, "stockReservationMode", StockReservationMode.IN_MEMORY);
+        when(productRepository.findAllById(any())).thenReturn(List.of(product));
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        OrderExtra createdOrder = orderService.createOrder(order, items);
+
+        assertNotNull(createdOrder);
+        verify(inventoryLedger, times(1)).reserve(Map.of(1L, 5));
+        verify(productRepository, never()).saveAll(anyCollection());
+        verify(orderProductRepository, times(1)).saveAll(copiesOf(items));
+    }
+
+    /**
+     * Try to create order in in-memory reservation mode, when the ledger has not enough stock
+     */
+    @Test
+    void createOrder_ShouldThrowException_WhenLedgerStockIsInsufficient() {
+        ReflectionTestUtils.setField(orderService, "stockReservationMode", StockReservationMode.IN_MEMORY);
+        when(productRepository.findAllById(any())).thenReturn(List.of(product));
+        when(inventoryLedger.reserve(any())).thenReturn(Optional.of(1L));
+
+        assertThrows(InsufficientStockException.class, () -> orderService.createOrder(order, items));
+
+        verify(orderProductRepository, never()).saveAll(anyList());
     }
 
     /**
@@ -145,13 +276,12 @@ class OrderServiceTest {
      */
     @Test
     void getOrderById_ShouldReturnOrder_WhenOrderExists() {
-        when(orderExtraRepository.findById(1L)).thenReturn(Optional.of(orderExtra));
+        when(orderExtraRepository.findLinesByIdIn(List.of(1L))).thenReturn(List.of(line(1L)));
 
-        OrderExtra foundOrder = orderService.getOrderById(1L);
+        List<OrderLineDTO> foundOrder = orderService.getOrderById(1L);
 
-        assertNotNull(foundOrder);
-        assertEquals(orderExtra, foundOrder);
-        verify(orderExtraRepository, times(1)).findById(1L);
+        assertEquals(List.of(line(1L)), foundOrder);
+        verify(orderExtraRepository, never()).findById(any());
     }
 
     /**
@@ -159,11 +289,9 @@ class OrderServiceTest {
      */
     @Test
     void getOrderById_ShouldThrowException_WhenOrderDoesNotExist() {
-        when(orderExtraRepository.findById(1L)).thenReturn(Optional.empty());
+        when(orderExtraRepository.findLinesByIdIn(List.of(1L))).thenReturn(Collections.emptyList());
 
         assertThrows(NotFoundException.class, () -> orderService.getOrderById(1L));
-
-        verify(orderExtraRepository, times(1)).findById(1L);
     }
 
     /**
@@ -171,13 +299,15 @@ class OrderServiceTest {
      */
     @Test
     void getAllOrders_ShouldReturnOrders() {
-        when(orderExtraRepository.findAll()).thenReturn(List.of(orderExtra, orderExtra));
+        when(orderExtraRepository.findIdsAfter(eq(0L), any())).thenReturn(List.of(1L, 2L));
+        when(orderExtraRepository.findLinesByIdIn(List.of(1L, 2L))).thenReturn(List.of(line(1L), line(2L)));
 
-        List<OrderExtra> orders = orderService.getAllOrders();
+        OrderPage page = orderService.getAllOrders(0L, null);
 
-        assertNotNull(orders);
-        assertEquals(2, orders.size());
-        verify(orderExtraRepository, times(1)).findAll();
+        assertNotNull(page);
+        assertEquals(2, page.lines().size());
+        assertNull(page.nextAfterId());
+        verify(orderExtraRepository, times(1)).findLinesByIdIn(List.of(1L, 2L));
     }
 
     /**
@@ -185,13 +315,40 @@ class OrderServiceTest {
      */
     @Test
     void getAllOrders_ShouldReturnEmptyList_WhenNoOrders() {
-        when(orderExtraRepository.findAll()).thenReturn(Collections.emptyList());
+        when(orderExtraRepository.findIdsAfter(eq(0L), any())).thenReturn(Collections.emptyList());
 
-        List<OrderExtra> orders = orderService.getAllOrders();
+        OrderPage page = orderService.getAllOrders(0L, null);
 
-        assertNotNull(orders);
-        assertTrue(orders.isEmpty());
-        verify(orderExtraRepository, times(1)).findAll();
+        assertNotNull(page);
+        assertTrue(page.lines().isEmpty());
+        assertNull(page.nextAfterId());
+        verify(orderExtraRepository, never()).findLinesByIdIn(any());
+    }
+
+    /**
+     * Test of getting a page of orders, when more orders follow.
+     * One extra ID is requested to detect the next page, but only the page itself is loaded.
+     */
+    @Test
+    void getAllOrders_ShouldReturnNextCursor_WhenMoreOrdersExist() {
+        when(orderExtraRepository.findIdsAfter(eq(5L), argThat(pageable -> pageable.getPageSize() == 3)))
+                .thenReturn(List.of(6L, 7L, 8L));
+        when(orderExtraRepository.findLinesByIdIn(List.of(6L, 7L))).thenReturn(List.of(line(6L), line(7L)));
+
+        OrderPage page = orderService.getAllOrders(5L, 2);
+
+        assertEquals(2, page.lines().size());
+        assertEquals(7L, page.nextAfterId());
+    }
+
+    /**
+     * Test of getting a page of orders with an invalid page size.
+     */
+    @Test
+    void getAllOrders_ShouldThrowException_WhenPageSizeIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () -> orderService.getAllOrders(0L, 0));
+
+        verifyNoInteractions(orderExtraRepository);
     }
 
     /**
@@ -219,4 +376,156 @@ class OrderServiceTest {
     }
 
 
+
+    /**
+     * Expired orders are reaped in chunks with one stock update per product and bulk deletes
+     */
+    @Test
+    void cancelExpiredOrders_ShouldReapInChunks() {
+        ReflectionTestUtils.setField(orderService, "expiryMode", OrderExpiryMode.POLLING);
+        ReflectionTestUtils.setField(orderService, "reaperChunkSize", 2);
+        Order first = new Order();
+        first.setId(1L);
+        Order second = new Order();
+        second.setId(2L);
+        Order third = new Order();
+        third.setId(3L);
+
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(orderExtraRepository.findExpiredIds(any(), any()))
+                .thenReturn(List.of(1L, 2L))
+                .thenReturn(List.of(3L));
+        when(orderRepository.lockUnpaidByIdIn(List.of(1L, 2L))).thenReturn(List.of(first, second));
+        when(orderRepository.lockUnpaidByIdIn(List.of(3L))).thenReturn(List.of(third));
+        when(orderProductRepository.sumQuantitiesByOrderIds(List.of(1L, 2L)))
+                .thenReturn(List.of(new ProductQuantityTotalDTO(1L, CREATED_AT, 7L, new BigDecimal("139.93")), new ProductQuantityTotalDTO(2L, CREATED_AT, 1L, new BigDecimal("19.99"))));
+        when(orderProductRepository.sumQuantitiesByOrderIds(List.of(3L)))
+                .thenReturn(List.of(new ProductQuantityTotalDTO(1L, CREATED_AT, 2L, new BigDecimal("39.98"))));
+
+        orderService.cancelExpiredOrders();
+
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(productRepository).incrementStock(1L, 7);
+        verify(productRepository).incrementStock(2L, 1);
+        verify(productRepository).incrementStock(1L, 2);
+        verify(orderProductRepository).deleteByOrderIds(List.of(1L, 2L));
+        verify(orderRepository).deleteByIdIn(List.of(1L, 2L));
+        verify(orderRepository).deleteByIdIn(List.of(3L));
+        verify(productRepository, never()).save(any(Product.class));
+        verify(salesRollupService).ordersExpired(List.of(new ProductQuantityTotalDTO(1L, CREATED_AT, 2L, new BigDecimal("39.98"))));
+    }
+
+    /**
+     * Orders paid after being selected by the reaper are left alone
+     */
+    @Test
+    void cancelExpiredOrders_ShouldSkipOrdersPaidInTheMeantime() {
+        ReflectionTestUtils.setField(orderService, "expiryMode", OrderExpiryMode.POLLING);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(orderExtraRepository.findExpiredIds(any(), any())).thenReturn(List.of(1L));
+        when(orderRepository.lockUnpaidByIdIn(List.of(1L))).thenReturn(Collections.emptyList());
+
+        orderService.cancelExpiredOrders();
+
+        verify(productRepository, never()).incrementStock(any(), anyInt());
+        verify(orderRepository, never()).deleteByIdIn(any());
+    }
+
+    /**
+     * Due orders from the expiry queue are cancelled in chunks without querying for expired orders
+     */
+    @Test
+    void cancelExpiredOrders_ShouldCancelDueOrdersInChunks() {
+        ReflectionTestUtils.setField(orderService, "reaperChunkSize", 2);
+        Order first = new Order();
+        first.setId(1L);
+        Order third = new Order();
+        third.setId(3L);
+
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(orderRepository.lockUnpaidByIdIn(List.of(1L, 2L))).thenReturn(List.of(first));
+        when(orderRepository.lockUnpaidByIdIn(List.of(3L))).thenReturn(List.of(third));
+        when(orderProductRepository.sumQuantitiesByOrderIds(any()))
+                .thenReturn(List.of(new ProductQuantityTotalDTO(1L, CREATED_AT, 1L, new BigDecimal("19.99"))));
+
+        int reaped = orderService.cancelExpiredOrders(List.of(1L, 2L, 3L));
+
+        assertEquals(2, reaped);
+        verify(orderRepository).deleteByIdIn(List.of(1L));
+        verify(orderRepository).deleteByIdIn(List.of(3L));
+        verify(orderExtraRepository, never()).findExpiredIds(any(), any());
+        verify(orderMetrics).reaperRun(eq("timer"), any(), eq(2), eq(1));
+    }
+
+    /**
+     * In timer mode the scheduled task does not query the database
+     */
+    @Test
+    void cancelExpiredOrders_ShouldNotPoll_InTimerMode() {
+        orderService.cancelExpiredOrders();
+
+        verifyNoInteractions(orderExtraRepository, transactionTemplate);
+    }
+
+    /**
+     * Orders of a batch reserve against the stock left by the orders before them
+     */
+    @Test
+    void createOrders_ShouldRejectOnlyOrdersThatCannotBeFulfilled() {
+        when(productRepository.findAllById(any())).thenReturn(List.of(product));
+        when(orderRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<BatchOrderResult> results = orderService.createOrders(List.of(
+                new NewOrder(new Order(), List.of(itemOf(1L, 6))),
+                new NewOrder(new Order(), List.of(itemOf(1L, 6))),
+                new NewOrder(new Order(), List.of(itemOf(1L, 4))),
+                new NewOrder(new Order(), List.of(itemOf(2L, 1)))
+        ));
+
+        assertTrue(results.get(0).isCreated());
+        assertEquals("Insufficient stock: Test Product", results.get(1).error());
+        assertTrue(results.get(2).isCreated());
+        assertEquals("Product not found", results.get(3).error());
+        assertEquals(0, product.getStockQuantity());
+        verify(orderRepository, times(1)).saveAll(argThat(orders -> ((List<?>) orders).size() == 2));
+        verify(productRepository, times(1)).saveAll(List.of(product));
+        verify(orderProductRepository, times(1)).saveAll(argThat(items -> ((List<?>) items).size() == 2));
+    }
+
+    /**
+     * Each attempt saves copies of the requested items, so they are matched by product and quantity
+     */
+    private Iterable<OrderProduct> copiesOf(List<OrderProduct> expected) {
+        return argThat(saved -> {
+            List<OrderProduct> actual = new ArrayList<>();
+            saved.forEach(actual::add);
+            if (actual.size() != expected.size()) {
+                return false;
+            }
+            for (int i = 0; i < actual.size(); i++) {
+                if (actual.get(i) == expected.get(i)
+                        || actual.get(i).getProduct() != expected.get(i).getProduct()
+                        || actual.get(i).getQuantity() != expected.get(i).getQuantity()) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    private OrderProduct itemOf(Long productId, int quantity) {
+        Product reference = new Product();
+        reference.setId(productId);
+        OrderProduct item = new OrderProduct();
+        item.setProduct(reference);
+        item.setQuantity(quantity);
+        return item;
+    }
+
+    private OrderLineDTO line(Long orderId) {
+        return new OrderLineDTO(orderId, CREATED_AT, false, 1L, "Test product", new BigDecimal("10.00"), 10, 5);
+    }
 }
@@ -1,9 +1,14 @@
 package com.demo.store.service;
 
+import com.demo.store.cache.ProductCache;
+import com.demo.store.cache.ProductCatalog;
+import com.demo.store.dto.ProductCatalogVersionDTO;
 import com.demo.store.exception.NotFoundException;
 import com.demo.store.model.Product;
 import com.demo.store.repository.OrderProductRepository;
 import com.demo.store.repository.ProductRepository;
+import com.demo.store.search.ProductSearchIndex;
+import com.demo.store.util.ETagUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,6 +19,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -27,6 +34,15 @@ class ProductServiceTest {
     @Mock
     private OrderProductRepository orderProductRepository;
 
+    @Mock
+    private InventoryLedger inventoryLedger;
+
+    @Mock
+    private ProductCache productCache;
+
+    @Mock
+    private ProductSearchIndex productSearchIndex;
+
     @InjectMocks
     private ProductService productService;
 
@@ -39,6 +55,12 @@ class ProductServiceTest {
         product.setName("Test Product");
         product.setPrice(BigDecimal.valueOf(19.99));
         product.setStockQuantity(10);
+
+        // Cache misses go straight to the repository
+        lenient().when(productCache.getProduct(any(), any())).thenAnswer(invocation ->
+                invocation.<Function<Long, Optional<Product>>>getArgument(1).apply(invocation.getArgument(0)));
+        lenient().when(productCache.getCatalog(any())).thenAnswer(invocation ->
+                new ProductCatalog(invocation.<Supplier<List<Product>>>getArgument(0).get(), "\"c\""));
     }
 
     /**
@@ -55,6 +77,19 @@ class ProductServiceTest {
         verify(productRepository, times(1)).findAll();
     }
 
+    /**
+     * The catalog ETag is computed from aggregates when the catalog is not cached, without loading products
+     */
+    @Test
+    void getCatalogETag_ShouldUseAggregates_WhenCatalogIsNotCached() {
+        when(productCache.getCatalogETag(any())).thenAnswer(invocation ->
+                invocation.<Supplier<String>>getArgument(0).get());
+        when(productRepository.findCatalogVersion()).thenReturn(new ProductCatalogVersionDTO(5L, 7L, 9L));
+
+        assertEquals(ETagUtils.catalogETag(5, 7, 9), productService.getCatalogETag());
+        verify(productRepository, never()).findAll();
+    }
+
     /**
      * Test for getting a product by its ID
      */
@@ -92,6 +127,18 @@ class ProductServiceTest {
         assertNotNull(createdProduct);
         assertEquals(product.getName(), createdProduct.getName());
         verify(productRepository, times(1)).save(product);
+        verify(productSearchIndex, times(1)).putAfterCommit(1L, "Test Product");
+    }
+
+    /**
+     * Test for searching products with a limit out of range
+     */
+    @Test
+    void searchProducts_ShouldThrowException_WhenLimitIsOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> productService.searchProducts("kozel", 0));
+        assertThrows(IllegalArgumentException.class, () -> productService.searchProducts("kozel", 51));
+
+        verifyNoInteractions(productSearchIndex);
     }
 
     /**
@@ -108,6 +155,7 @@ class ProductServiceTest {
         assertEquals(product.getName(), updatedProduct.getName());
         verify(productRepository, times(1)).findById(1L);
         verify(productRepository, times(1)).save(product);
+        verify(productCache, times(1)).evictAfterCommit(List.of(1L));
     }
 
     /**
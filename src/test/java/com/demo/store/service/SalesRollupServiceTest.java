@@ -0,0 +1,104 @@
+package com.demo.store.service;
+
+import com.demo.store.dto.ProductQuantityTotalDTO;
+import com.demo.store.model.OrderProduct;
+import com.demo.store.model.Product;
+import com.demo.store.model.RollupBucket;
+import com.demo.store.repository.SalesRollupRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SalesRollupServiceTest {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2025, 3, 1, 14, 25, 30);
+
+    @Mock
+    private SalesRollupRepository salesRollupRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private SalesRollupService salesRollupService;
+
+    /**
+     * Lifecycle changes of the same product and bucket are merged into one row per bucket size
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_ShouldMergeNetDeltasPerBucket() {
+        doAnswer(invocation -> {
+            ((Consumer<Object>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        salesRollupService.orderCreated(CREATED_AT, false, List.of(item(1L, 4, "10.00")));
+        // Revenue is taken from the sale price of each item, not from the current product price
+        salesRollupService.orderCreated(CREATED_AT.plusSeconds(10), false, List.of(item(1L, 2, "12.50"), item(2L, 1, "5.00")));
+        salesRollupService.orderPaid(CREATED_AT, List.of(item(1L, 4, "10.00")));
+        salesRollupService.ordersExpired(List.of(new ProductQuantityTotalDTO(2L, CREATED_AT, 1L, new BigDecimal("5.00"))));
+        salesRollupService.flush();
+
+        // Product 2 nets out to zero and is not written
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), argThat((List<Object[]> batch) ->
+                batch.size() == 3
+                        && batch.stream().allMatch(row -> row[2].equals(1L) && row[3].equals(6L) && row[4].equals(4L)
+                                && new BigDecimal("65.00").compareTo((BigDecimal) row[5]) == 0
+                                && new BigDecimal("40.00").compareTo((BigDecimal) row[6]) == 0)
+                        && batch.stream().anyMatch(row -> row[0].equals("MINUTE") && row[1].equals(LocalDateTime.of(2025, 3, 1, 14, 25)))
+                        && batch.stream().anyMatch(row -> row[0].equals("HOUR") && row[1].equals(LocalDateTime.of(2025, 3, 1, 14, 0)))
+                        && batch.stream().anyMatch(row -> row[0].equals("DAY") && row[1].equals(LocalDateTime.of(2025, 3, 1, 0, 0)))));
+    }
+
+    /**
+     * Nothing is written when nothing has changed since the last flush
+     */
+    @Test
+    void flush_ShouldDoNothing_WhenNoChanges() {
+        salesRollupService.flush();
+
+        verifyNoInteractions(transactionTemplate, jdbcTemplate);
+    }
+
+    /**
+     * Query of a range that spans too many buckets
+     */
+    @Test
+    void getSales_ShouldThrowException_WhenRangeIsTooLong() {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> salesRollupService.getSales(RollupBucket.MINUTE, from, from.plusDays(7), null));
+        assertThrows(IllegalArgumentException.class,
+                () -> salesRollupService.getSales(RollupBucket.DAY, from, from, null));
+        verifyNoInteractions(salesRollupRepository);
+    }
+
+    private static OrderProduct item(Long productId, int quantity, String price) {
+        Product product = new Product();
+        product.setId(productId);
+        OrderProduct item = new OrderProduct();
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        item.setPrice(new BigDecimal(price));
+        return item;
+    }
+}
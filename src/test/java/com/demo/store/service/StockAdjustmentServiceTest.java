@@ -0,0 +1,113 @@
+package com.demo.store.service;
+
+import com.demo.store.cache.ProductCache;
+import com.demo.store.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockAdjustmentServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private InventoryLedger inventoryLedger;
+
+    @Mock
+    private ProductCache productCache;
+
+    @InjectMocks
+    private StockAdjustmentService stockAdjustmentService;
+
+    /**
+     * Adjustments of existing products go in one batch, the others are reported with their position
+     */
+    @Test
+    void adjustStock_ShouldReportConflictsAndEvictOnce() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+        when(productRepository.findIdsByIdIn(anyCollection())).thenReturn(List.of(1L, 2L));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1, 0, 1});
+
+        StockAdjustmentResult result = stockAdjustmentService.adjustStock(List.of(
+                new StockAdjustment(1L, 5, null),
+                new StockAdjustment(2L, -100, null),
+                new StockAdjustment(9L, 1, null),
+                new StockAdjustment(1L, null, 40),
+                new StockAdjustment(2L, 1, 1)));
+
+        assertEquals(2, result.applied());
+        assertEquals(List.of(
+                new StockAdjustmentResult.Conflict(1, 2L, "Insufficient stock"),
+                new StockAdjustmentResult.Conflict(2, 9L, "Product not found"),
+                new StockAdjustmentResult.Conflict(4, 2L, "Exactly one of delta and absolute is required")),
+                result.conflicts());
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((List<Object[]> batch) ->
+                batch.size() == 3
+                        && batch.get(0)[0].equals(1) && batch.get(0)[1].equals(5)
+                        && batch.get(2)[0].equals(0) && batch.get(2)[1].equals(40)));
+        verify(productCache, times(1)).evictAfterCommit(argThat((Collection<Long> ids) -> Set.copyOf(ids).equals(Set.of(1L))));
+    }
+
+    /**
+     * A failed chunk is reported as a range with everything after it; only committed chunks count as applied
+     */
+    @Test
+    void adjustStock_ShouldReportFailedRange_WhenChunkFails() {
+        ReflectionTestUtils.setField(stockAdjustmentService, "chunkSize", 2);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+        when(productRepository.findIdsByIdIn(anyCollection())).thenReturn(List.of(1L));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenReturn(new int[]{1, 1})
+                .thenThrow(new QueryTimeoutException("Timeout"));
+
+        StockAdjustmentResult result = stockAdjustmentService.adjustStock(List.of(
+                new StockAdjustment(1L, 5, null),
+                new StockAdjustment(1L, 2, null),
+                new StockAdjustment(1L, 3, null),
+                new StockAdjustment(9L, 1, null),
+                new StockAdjustment(1L, 4, null)));
+
+        assertEquals(2, result.applied());
+        assertTrue(result.conflicts().isEmpty());
+        assertEquals(2, result.failed().from());
+        assertEquals(5, result.failed().to());
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList());
+    }
+
+    /**
+     * Requests above the configured size are rejected before anything is applied
+     */
+    @Test
+    void adjustStock_ShouldThrowException_WhenTooManyAdjustments() {
+        List<StockAdjustment> adjustments = Collections.nCopies(10001, new StockAdjustment(1L, 1, null));
+
+        assertThrows(IllegalArgumentException.class, () -> stockAdjustmentService.adjustStock(adjustments));
+        verifyNoInteractions(transactionTemplate, jdbcTemplate);
+    }
+}
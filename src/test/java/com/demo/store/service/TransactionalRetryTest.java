@@ -0,0 +1,88 @@
+package com.demo.store.service;
+
+import com.demo.store.exception.InsufficientStockException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionalRetryTest {
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private TransactionalRetry transactionalRetry;
+
+    @BeforeEach
+    void setUp() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("order.retry.max-attempts", "3")
+                .withProperty("order.retry.base-backoff-ms", "1")
+                .withProperty("order.retry.max-backoff-ms", "2")
+                .withProperty("order.retry.create-order.max-attempts", "5");
+        transactionalRetry = new TransactionalRetry(transactionTemplate, environment);
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    /**
+     * Every attempt runs in a new transaction until one succeeds
+     */
+    @Test
+    void execute_ShouldRetryInNewTransaction_WhenConflicted() {
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicInteger retries = new AtomicInteger();
+
+        String result = transactionalRetry.execute("cancel-order", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Product", 1L);
+            }
+            return "done";
+        }, e -> retries.incrementAndGet());
+
+        assertEquals("done", result);
+        assertEquals(2, retries.get());
+        verify(transactionTemplate, times(3)).execute(any());
+    }
+
+    /**
+     * The conflict is rethrown once the attempts of the operation are used up
+     */
+    @Test
+    void execute_ShouldGiveUp_AfterMaxAttemptsOfOperation() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> transactionalRetry.execute("create-order", () -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("Product", 1L);
+        }));
+
+        assertEquals(5, attempts.get());
+    }
+
+    /**
+     * Business errors are never retried
+     */
+    @Test
+    void execute_ShouldNotRetry_OtherExceptions() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(InsufficientStockException.class, () -> transactionalRetry.execute("create-order", () -> {
+            attempts.incrementAndGet();
+            throw new InsufficientStockException("Insufficient stock");
+        }));
+
+        assertEquals(1, attempts.get());
+    }
+}